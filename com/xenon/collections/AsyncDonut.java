@@ -2,8 +2,8 @@ package com.xenon.collections;
 
 
 import com.xenon.collections.abstraction.Struct;
+import com.xenon.utils.Cursor;
 import com.xenon.utils.readability.Values;
-import test.com.xenon.logger.WeakVolatileInt;
 
 import java.util.function.Consumer;
 
@@ -16,8 +16,8 @@ import java.util.function.Consumer;
 @SuppressWarnings("unused")
 public class AsyncDonut<T> extends Struct<T> {
 
-    private final WeakVolatileInt head = new WeakVolatileInt();
-    private final WeakVolatileInt tail = new WeakVolatileInt();
+    private final Cursor head = new Cursor();
+    private final Cursor tail = new Cursor();
 
     /**
      * Creates a new AsyncDonut
@@ -46,16 +46,12 @@ public class AsyncDonut<T> extends Struct<T> {
      */
     @Override
     public void add(T obj){
-        int c = head.fetchAndAdd(1);  // atomic op
-        int c1 = c & modulo;
+        int c = (int) (head.getAndAdd(1) & modulo);  // atomic op. 64-bit cursors never wrap, no CAS needed
 
-        if (c != c1)
-            head.realCas(c, c1);  // threads may help each other on this
+        data[c] = obj;
 
-        data[c1] = obj;
-
-        if (data[c1 + 1] != null)   // overwrite case
-            tail.fetchAndAdd(1);    // we must move tail along
+        if (data[(c + 1) & modulo] != null)   // overwrite case
+            tail.getAndAdd(1);    // we must move tail along
     }
 
     /**
@@ -64,15 +60,12 @@ public class AsyncDonut<T> extends Struct<T> {
      */
     @SuppressWarnings("unchecked")
     public T consume(){
-        int c = tail.fetchAndAdd(1);
-        int c1 = c & modulo;
+        int c = (int) (tail.getAndAdd(1) & modulo);
 
-        if (c != c1)
-            tail.realCas(c, c1);
-        T result = (T) data[c1];
+        T result = (T) data[c];
 
-        if (c1 != (head.getVolatile() & modulo))
-            data[c1] = null;    // unsafe. safe version would be with data being AtomicReferenceArray
+        if (c != (head.getAcquire() & modulo))
+            data[c] = null;    // unsafe. safe version would be with data being AtomicReferenceArray
 
         return result;
     }
@@ -83,9 +76,9 @@ public class AsyncDonut<T> extends Struct<T> {
      */
     @SuppressWarnings("unchecked")
     public void consumeAll(Consumer<T> consumer){
-        int c = tail.getVolatile();
+        long c = tail.getAcquire();
         for (int i=0; i < modulo + 1; i++){
-            T e = (T) data[(i + c) & modulo];
+            T e = (T) data[(int) ((i + c) & modulo)];
             if (e != null)
                 consumer.accept(e);
         }
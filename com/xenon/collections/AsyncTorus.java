@@ -1,10 +1,10 @@
 package com.xenon.collections;
 
 import com.xenon.collections.abstraction.Struct;
+import com.xenon.utils.Cursor;
 import com.xenon.utils.SpinLock;
 import com.xenon.utils.readability.Values;
 
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -16,7 +16,7 @@ import java.util.function.Consumer;
 @SuppressWarnings("unused")
 public class AsyncTorus<T> extends Struct<T> {
 
-    protected final AtomicInteger head = new AtomicInteger();
+    protected final Cursor head = new Cursor();
 
     /**
      * Creates a new ring buffer object with the given maximal capacity.
@@ -42,13 +42,11 @@ public class AsyncTorus<T> extends Struct<T> {
      */
     @Override
     public void add(T t) {
-        int h = head.getAndIncrement(); // what makes it lock free.
+        int h = (int) (head.getAndAdd(1) & modulo); // what makes it lock free.
         // (only works when at most N threads call this method at the same time, N < capacity.
         // but anyway, in general, this ring buffer's capacity should be set accordingly
         // to the number of threads that will run)
 
-        h &= modulo;
-
         data[h] = t;
     }
 
@@ -68,14 +66,11 @@ public class AsyncTorus<T> extends Struct<T> {
      */
     @SuppressWarnings("unchecked")
     public void consumeAll(Consumer<T> consumer){
-        int h = head.getAcquire();
-        int h1 = h & modulo;
-        if (h1 != h)
-            head.compareAndSet(h, h1);
+        int h = (int) (head.getAcquire() & modulo);
 
-        int index = data[h1] == null ? 0 : h1;
+        int index = data[h] == null ? 0 : h;
         for (int i=index; i < index + modulo + 1;++i)
-            consumer.accept((T) data[i]);
+            consumer.accept((T) data[i & modulo]);
     }
 
 }
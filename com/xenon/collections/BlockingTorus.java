@@ -2,37 +2,55 @@ package com.xenon.collections;
 
 import com.xenon.collections.abstraction.Struct;
 import com.xenon.utils.SpinLock;
+import com.xenon.utils.abstraction.Lockable;
 import com.xenon.utils.readability.Values;
 
 import java.util.function.Consumer;
 
 /**
  * Ring buffer is too long and boring so named it torus, though it's nothing 3-dimensional.
- * A {@link SpinLock} object is used to lock critical sections (basically mutexes without context-switching).
+ * A {@link SpinLock} object is used to lock critical sections (basically mutexes without context-switching),
+ * unless another {@link Lockable} is given at build time.
  * @author Zenon
  * @param <T> the type of data the Torus will hold
  */
 @SuppressWarnings("unused")
 public class BlockingTorus<T> extends Struct<T> {
 
-    protected final SpinLock lock = SpinLock.create();
+    protected final Lockable lock;
     protected int head, tail;
 
     /**
-     * Creates a new ring buffer object with the given maximal capacity.
+     * Creates a new ring buffer object with the given maximal capacity, locked by a {@link SpinLock}.
      * @param capacity the max capacity of this ring buffer
      * @throws IllegalArgumentException if capacity is not a power of 2
      */
     public static <T> BlockingTorus<T> build(@Values("2^k, k∈ℕ") int capacity){
+        return build(capacity, SpinLock.create());
+    }
+
+    /**
+     * Creates a new ring buffer object with the given maximal capacity, locked by the given lock.
+     * With many producers, a queue lock such as {@link com.xenon.utils.McsLock} scales better than the default
+     * {@link SpinLock}.
+     * @param capacity the max capacity of this ring buffer
+     * @param lock the lock guarding critical sections. must not be shared with other structs
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    public static <T> BlockingTorus<T> build(@Values("2^k, k∈ℕ") int capacity, Lockable lock){
         if (capacity <= 0 || (capacity & -capacity) != capacity)
             throw new IllegalArgumentException("Torus' capacity must be a power of 2. Given "+capacity);
-        return new BlockingTorus<>(capacity);
+        return new BlockingTorus<>(capacity, lock);
     }
     /**
      * Creates a new ring buffer object with the given maximal capacity.
      * @param capacity the max capacity of this ring buffer. any power of 2 is possible.
+     * @param lock the lock guarding critical sections
      */
-    protected BlockingTorus(int capacity){super(capacity);}
+    protected BlockingTorus(int capacity, Lockable lock){
+        super(capacity);
+        this.lock = lock;
+    }
 
 
     /**
@@ -136,7 +154,7 @@ public class BlockingTorus<T> extends Struct<T> {
      * @return whether this ring buffer has room
      */
     public boolean hasRoom(){
-        return data[head] == null;
+        return data[head & modulo] == null;
     }
 
     /**
@@ -146,7 +164,7 @@ public class BlockingTorus<T> extends Struct<T> {
      */
     public boolean isEmpty(){
         lock.lock();
-        Object o = data[tail];
+        Object o = data[tail & modulo];
         lock.unlock();
         return o == null;
     }
@@ -0,0 +1,85 @@
+package com.xenon.collections;
+
+import com.xenon.collections.abstraction.PrimitiveTorus;
+import com.xenon.utils.SpinLock;
+import com.xenon.utils.abstraction.Lockable;
+import com.xenon.utils.readability.Values;
+
+import java.util.function.IntConsumer;
+
+/**
+ * {@link BlockingTorus} of <code>int</code>, without boxing.
+ * Any number of producers may {@link #add(int)}, a single consumer {@link #drain(IntConsumer)}s.
+ * @author Zenon
+ * @see PrimitiveTorus
+ */
+@SuppressWarnings("unused")
+public class IntTorus extends PrimitiveTorus {
+
+    private final int[] data, scratch;
+
+    /**
+     * Creates a new ring buffer with the given capacity, locked by a {@link SpinLock}.
+     * @param capacity the max capacity of this ring buffer
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    public static IntTorus build(@Values("2^k, k∈ℕ") int capacity){
+        return build(capacity, SpinLock.create());
+    }
+
+    /**
+     * Creates a new ring buffer with the given capacity, locked by the given lock.
+     * @param capacity the max capacity of this ring buffer
+     * @param lock the lock guarding critical sections. must not be shared with other structs
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    public static IntTorus build(@Values("2^k, k∈ℕ") int capacity, Lockable lock){
+        checkCapacity(capacity);
+        return new IntTorus(capacity, lock);
+    }
+
+    protected IntTorus(int capacity, Lockable lock){
+        super(capacity, lock);
+        data = new int[capacity];
+        scratch = new int[capacity];
+    }
+
+    /**
+     * Adds a value at the head position. Overwrites the oldest value if nothing's consumed it.
+     * @param v the value to be added
+     */
+    public void add(int v){
+        lock.lock();
+        data[claim()] = v;
+        lock.unlock();
+    }
+
+    /**
+     * Adds a value at the head position, unless the lock is taken.
+     * @param v the value to be added
+     * @return whether it succeeded
+     */
+    public boolean tryAdd(int v){
+        if (!lock.tryLock())
+            return false;
+        data[claim()] = v;
+        lock.unlock();
+        return true;
+    }
+
+    /**
+     * Consumes every value in this ring buffer, oldest first. Only one thread may drain at a time.
+     * Values are copied out under the lock, the consumer is applied after releasing it.
+     * @param consumer the consumer
+     * @return the number of values consumed
+     */
+    public int drain(IntConsumer consumer){
+        lock.lock();
+        int n = drainTo(data, scratch);
+        lock.unlock();
+
+        for (int i = 0; i < n; i++)
+            consumer.accept(scratch[i]);
+        return n;
+    }
+}
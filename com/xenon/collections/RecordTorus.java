@@ -0,0 +1,249 @@
+package com.xenon.collections;
+
+import com.xenon.utils.readability.Values;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Multi-producer, single-consumer ring buffer of variable-length byte records, backed by a direct
+ * {@link ByteBuffer}. Contrary to {@link com.xenon.collections.abstraction.Struct}s, nothing is kept on the heap: producers serialize their
+ * record in place and the consumer reads it where it lies, so payloads never enter the GC's working set,
+ * however big the burst.
+ * <p>
+ * Layout of the buffer: <code>capacity</code> bytes of records, followed by a trailer holding the 64-bit
+ * tail and head cursors, each on its own 128 bytes to avoid false sharing. Keeping the cursors in the buffer
+ * itself, rather than in {@link com.xenon.utils.Cursor}s, allows the buffer to be a memory-mapped file.
+ * <p>
+ * A record is an 8 bytes header, <code>int length</code> (header included) then <code>int type</code>,
+ * followed by the payload, padded to 8 bytes. Writing a record:
+ * <pre><code>
+ *     int offset = torus.claim(length);   // -1 if full
+ *     if (offset &gt;= 0){
+ *         torus.buffer().putLong(offset, value);  // absolute puts only
+ *         torus.commit(offset);
+ *     }
+ * </code></pre>
+ * A claimed record holds a negative length until committed, and the consumer zeroes what it consumed,
+ * so it never reads a record that's not entirely written. When a record doesn't fit before the end of the
+ * buffer, the claim also covers a padding record up to the end, and the record starts back at 0.
+ * <p>
+ * Overflow is not ignored here: a claim fails rather than overwriting records not consumed yet.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class RecordTorus {
+
+    /**
+     * Atomic accesses to ints and longs of a direct buffer. They must be aligned, hence the 8 bytes alignment.
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Size of a record header.
+     */
+    public static final int HEADER = 8;
+    /**
+     * Size of the trailer following the records.
+     */
+    public static final int TRAILER = 256;
+    private static final int ALIGNMENT = 8;
+    private static final int TAIL_OFFSET = 0, HEAD_OFFSET = 128;
+    private static final int PADDING_TYPE = -1;
+
+    private final ByteBuffer buffer;
+    private final int capacity, mask, tailIndex, headIndex, maxRecord;
+
+    /**
+     * Creates a new ring buffer of the given capacity, allocated in direct memory.
+     * @param capacity the capacity in bytes
+     * @return the new ring buffer
+     * @throws IllegalArgumentException if capacity is not a power of 2, at least 64
+     */
+    public static RecordTorus build(@Values("2^k, k∈ℕ, k≥6") int capacity){
+        if (capacity < 64 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("capacity must be a power of 2, at least 64. Given "+capacity);
+        return new RecordTorus(ByteBuffer.allocateDirect(capacity + TRAILER).order(ByteOrder.nativeOrder()));
+    }
+
+    /**
+     * Uses the given buffer as ring buffer, for instance a {@link java.nio.MappedByteBuffer} shared with
+     * other processes. Its cursors are read from its trailer, so a buffer already in use can be wrapped again.
+     * @param buffer a direct buffer of <code>capacity + {@link #TRAILER}</code> bytes
+     * @return the new ring buffer
+     * @throws IllegalArgumentException if the buffer isn't direct or its capacity isn't a power of 2
+     * plus the trailer
+     */
+    public static RecordTorus wrap(ByteBuffer buffer){
+        int capacity = buffer.capacity() - TRAILER;
+        if (!buffer.isDirect() || capacity < 64 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("buffer must be direct, with a power of 2 capacity plus the trailer");
+        return new RecordTorus(buffer.duplicate().order(ByteOrder.nativeOrder()));
+    }
+
+    private RecordTorus(ByteBuffer buffer){
+        this.buffer = buffer;
+        this.capacity = buffer.capacity() - TRAILER;
+        this.mask = capacity - 1;
+        this.tailIndex = capacity + TAIL_OFFSET;
+        this.headIndex = capacity + HEAD_OFFSET;
+        this.maxRecord = capacity >> 3;
+    }
+
+    private static int align(int length){
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * @return the biggest payload length a record can have, an eighth of the capacity minus the header
+     */
+    public int maxLength(){
+        return maxRecord - HEADER;
+    }
+
+    /**
+     * Producer-side. Claims room for a record of the given payload length.
+     * Lock-free: a CAS on head, retried only if another producer claimed in between.
+     * @param length the payload length, in bytes
+     * @return the offset of the payload in {@link #buffer()}, or -1 if there isn't enough room
+     * @throws IllegalArgumentException if the record is bigger than an eighth of the capacity
+     */
+    public int claim(int length){
+        return claim(length, 0);
+    }
+
+    /**
+     * Producer-side. Claims room for a record of the given payload length and type.
+     * @param length the payload length, in bytes
+     * @param type a user-defined record type, positive
+     * @return the offset of the payload in {@link #buffer()}, or -1 if there isn't enough room
+     * @throws IllegalArgumentException if the record is bigger than an eighth of the capacity
+     * @see #claim(int)
+     */
+    public int claim(int length, int type){
+        if (length < 0 || length > maxLength())     // before any arithmetic, which a huge length would overflow
+            throw new IllegalArgumentException("record length must be between 0 and "+maxLength());
+        final int recordLength = length + HEADER;
+        final int aligned = align(recordLength);
+
+        long head;
+        int index, padding;
+        do {
+            head = (long) LONG.getVolatile(buffer, headIndex);
+            long tail = (long) LONG.getVolatile(buffer, tailIndex);
+            int free = capacity - (int) (head - tail);
+            index = (int) (head & mask);
+            padding = capacity - index < aligned ? capacity - index : 0;   // record would cross the end
+
+            if (aligned + padding > free)
+                return -1;
+        } while (!LONG.compareAndSet(buffer, headIndex, head, head + aligned + padding));
+
+        if (padding != 0){
+            buffer.putInt(index + 4, PADDING_TYPE);
+            INT.setRelease(buffer, index, padding);
+            index = 0;
+        }
+        buffer.putInt(index + 4, type);
+        INT.setRelease(buffer, index, -recordLength);  // claimed, not committed
+        return index + HEADER;
+    }
+
+    /**
+     * Producer-side. Publishes a record previously claimed, once its payload is written.
+     * @param offset the offset returned by {@link #claim(int)}
+     */
+    public void commit(int offset){
+        int index = offset - HEADER;
+        INT.setRelease(buffer, index, -(int) INT.get(buffer, index));
+    }
+
+    /**
+     * Consumer-side. Reads every committed record in order, zero-copy, stopping at the first record not
+     * committed yet. Only one thread may read at a time.
+     * @param handler the handler to be applied to each record
+     * @param limit the maximum number of records to read
+     * @return the number of records read
+     */
+    public int read(Handler handler, int limit){
+        final long tail = (long) LONG.get(buffer, tailIndex);    // only written by the consumer
+        long t = tail;
+        int count = 0;
+
+        while (count < limit && t - tail < capacity){   // a full ring would bring us back to records just read
+            int index = (int) (t & mask);
+            int recordLength = (int) INT.getAcquire(buffer, index);
+            if (recordLength <= 0)
+                break;
+            if (buffer.getInt(index + 4) != PADDING_TYPE){
+                handler.onRecord(buffer, index + HEADER, recordLength - HEADER, buffer.getInt(index + 4));
+                count++;
+            }
+            int aligned = align(recordLength);
+            zero(index, aligned);
+            t += aligned;
+        }
+
+        if (t != tail)
+            LONG.setRelease(buffer, tailIndex, t);   // producers see the zeroes before reusing the room
+        return count;
+    }
+
+    /**
+     * Consumer-side. Reads every committed record.
+     * @param handler the handler to be applied to each record
+     * @return the number of records read
+     * @see #read(Handler, int)
+     */
+    public int read(Handler handler){
+        return read(handler, Integer.MAX_VALUE);
+    }
+
+    private void zero(int index, int length){
+        for (int i = index, end = index + length; i < end; i += ALIGNMENT)   // records never cross the end
+            buffer.putLong(i, 0L);
+    }
+
+    /**
+     * The underlying buffer. Records must be written with absolute methods only, as the buffer is shared.
+     * @return the underlying buffer
+     */
+    public ByteBuffer buffer(){
+        return buffer;
+    }
+
+    /**
+     *
+     * @return the capacity in bytes, trailer excluded
+     */
+    public int capacity(){
+        return capacity;
+    }
+
+    /**
+     *
+     * @return the number of bytes claimed and not consumed yet
+     */
+    public int size(){
+        return (int) ((long) LONG.getVolatile(buffer, headIndex) - (long) LONG.getVolatile(buffer, tailIndex));
+    }
+
+    /**
+     * Consumer-side callback reading a record in place.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Called for each record. The record is only valid during the call, and must be read with absolute
+         * methods only.
+         * @param buffer the underlying buffer
+         * @param offset the offset of the payload
+         * @param length the payload length
+         * @param type the record type given at claim time
+         */
+        void onRecord(ByteBuffer buffer, int offset, int length, int type);
+    }
+}
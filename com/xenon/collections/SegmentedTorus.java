@@ -0,0 +1,192 @@
+package com.xenon.collections;
+
+import com.xenon.collections.abstraction.Struct;
+import com.xenon.utils.SpinLock;
+import com.xenon.utils.abstraction.Lockable;
+import com.xenon.utils.readability.Values;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link BlockingTorus} that never overwrites: when its ring is full, elements spill into a chain of
+ * {@link Donut}-like segments of the same power of 2 capacity, linked one after the other.
+ * <p>
+ * The fast path stays a fixed ring. Once something spilled, every following element goes to the chain too,
+ * until the consumer has drained it, so that FIFO order holds. Drained segments are kept in a small pool and
+ * recycled by the next burst, so bursts are absorbed without a large preallocation nor a steady allocation rate.
+ * <p>
+ * The struct is unbounded: if the consumer is durably slower than producers, memory grows.
+ * @author Zenon
+ * @param <T> the type of data the Torus will hold
+ */
+@SuppressWarnings("unused")
+public class SegmentedTorus<T> extends Struct<T> {
+
+    /**
+     * Default number of drained segments kept for re-use.
+     */
+    public static final int DEFAULT_POOLED_SEGMENTS = 8;
+
+    protected final Lockable lock;
+    protected long head, tail;
+
+    /**
+     * chain of spilled elements, oldest segment first. null when nothing spilled.
+     */
+    private Segment first, last;
+    /**
+     * stack of drained segments
+     */
+    private Segment pool;
+    private int pooled, spilled;
+    private final int maxPooled;
+
+    /**
+     * Creates a new segmented ring buffer, locked by a {@link SpinLock}.
+     * @param capacity the capacity of the ring and of each segment
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    public static <T> SegmentedTorus<T> build(@Values("2^k, k∈ℕ") int capacity){
+        return build(capacity, DEFAULT_POOLED_SEGMENTS, SpinLock.create());
+    }
+
+    /**
+     * Creates a new segmented ring buffer.
+     * @param capacity the capacity of the ring and of each segment
+     * @param maxPooled the number of drained segments kept for re-use
+     * @param lock the lock guarding critical sections. must not be shared with other structs
+     * @throws IllegalArgumentException if capacity is not a power of 2 or maxPooled is negative
+     */
+    public static <T> SegmentedTorus<T> build(@Values("2^k, k∈ℕ") int capacity, int maxPooled, Lockable lock){
+        if (capacity <= 0 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("Torus' capacity must be a power of 2. Given "+capacity);
+        if (maxPooled < 0)
+            throw new IllegalArgumentException("maxPooled must be positive. Given "+maxPooled);
+        return new SegmentedTorus<>(capacity, maxPooled, lock);
+    }
+
+    protected SegmentedTorus(int capacity, int maxPooled, Lockable lock){
+        super(capacity);
+        this.maxPooled = maxPooled;
+        this.lock = lock;
+    }
+
+    /**
+     * Adds an object at the head position: in the ring if it has room and nothing spilled, in the chain otherwise.
+     * Never overwrites.
+     * @param t the object to be added
+     */
+    @Override
+    public void add(T t){
+        lock.lock();
+        if (first == null && head - tail <= modulo)
+            data[(int) (head++ & modulo)] = t;
+        else
+            spill(t);
+        lock.unlock();
+    }
+
+    private void spill(T t){
+        Segment s = last;
+        if (s == null || s.head > modulo){
+            Segment next = pool;
+            if (next != null){
+                pool = next.next;
+                next.next = null;
+                pooled--;
+            } else
+                next = new Segment(modulo + 1);
+
+            if (s == null)
+                first = next;
+            else
+                s.next = next;
+            last = s = next;
+        }
+        s.data[s.head++] = t;
+        spilled++;
+    }
+
+    /**
+     * Consumes the oldest object, from the ring first, then from the chain.
+     * @return the consumed element, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T consume(){
+        lock.lock();
+        T result;
+        if (head != tail){
+            int t = (int) (tail++ & modulo);
+            result = (T) data[t];
+            data[t] = null;
+        } else if (first != null){
+            Segment s = first;
+            result = (T) s.data[s.tail];
+            s.data[s.tail++] = null;
+            spilled--;
+            if (s.tail == s.head){  // drained
+                first = s.next;
+                if (first == null)
+                    last = null;
+                recycle(s);
+            }
+        } else
+            result = null;
+        lock.unlock();
+        return result;
+    }
+
+    private void recycle(Segment s){
+        if (pooled == maxPooled)
+            return;     // left to the GC
+        s.head = s.tail = 0;
+        s.next = pool;
+        pool = s;
+        pooled++;
+    }
+
+    /**
+     * Consume everything in this ring buffer with the given consumer.
+     * @param consumer the consumer
+     */
+    public void consumeAll(Consumer<T> consumer){
+        for (T obj = consume(); obj != null; obj = consume())
+            consumer.accept(obj);
+    }
+
+    /**
+     * Returns if this ring buffer is empty.
+     * @return whether this ring buffer is empty
+     */
+    public boolean isEmpty(){
+        lock.lock();
+        boolean empty = head == tail && first == null;
+        lock.unlock();
+        return empty;
+    }
+
+    /**
+     *
+     * @return the number of elements waiting to be consumed, spilled ones included
+     */
+    public int size(){
+        lock.lock();
+        int n = (int) (head - tail) + spilled;
+        lock.unlock();
+        return n;
+    }
+
+    /**
+     * A spilled segment. Filled from 0 to its end once, then drained and recycled.
+     */
+    private static final class Segment {
+        final Object[] data;
+        int head, tail;
+        Segment next;
+
+        Segment(int capacity){
+            data = new Object[capacity];
+        }
+    }
+}
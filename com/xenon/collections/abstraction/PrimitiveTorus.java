@@ -0,0 +1,110 @@
+package com.xenon.collections.abstraction;
+
+import com.xenon.utils.abstraction.Lockable;
+
+/**
+ * An abstraction for ring buffers of primitives, which {@link Struct} can't be as it wraps an array of Objects.
+ * Holding primitives saves boxing every value passed between threads, which matters for numeric samples
+ * such as latencies or counters.
+ * <p>
+ * Like {@link com.xenon.collections.BlockingTorus}, critical sections are guarded by a {@link Lockable},
+ * and producers overwrite the oldest values when the ring is full. As there is no null for primitives,
+ * emptiness is told by the cursors alone: 64-bit, so they never wrap.
+ * <p>
+ * Meant for many producers and one consumer: subclasses drain into a scratch array owned by the struct,
+ * so that the consumer callback runs outside of the lock.
+ * @author Zenon
+ * @see com.xenon.collections.IntTorus
+ * @see com.xenon.collections.LongTorus
+ * @see com.xenon.collections.DoubleTorus
+ */
+@SuppressWarnings("unused")
+public abstract class PrimitiveTorus {
+
+    protected final Lockable lock;
+
+    /**
+     * equals to <code>capacity - 1</code>, see {@link Struct#modulo}.
+     */
+    protected final int modulo;
+
+    /**
+     * cursors, only read and written under {@link #lock}
+     */
+    protected long head, tail;
+
+    /**
+     * Super-classes should check if capacity is a power of 2.
+     * @param capacity the capacity of the struct
+     * @param lock the lock guarding critical sections
+     */
+    protected PrimitiveTorus(int capacity, Lockable lock){
+        this.modulo = capacity - 1;
+        this.lock = lock;
+    }
+
+    /**
+     * Checks the capacity given to a builder.
+     * @param capacity the capacity
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    protected static void checkCapacity(int capacity){
+        if (capacity <= 0 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("Torus' capacity must be a power of 2. Given "+capacity);
+    }
+
+    /**
+     * Claims the slot at the head, moving tail along if it holds a value not consumed yet.
+     * Must be called while holding {@link #lock}.
+     * @return the index of the claimed slot
+     */
+    protected final int claim(){
+        if (head - tail > modulo)   // overwrite case
+            tail++;
+        return (int) (head++ & modulo);
+    }
+
+    /**
+     * Consumes every value, copying them to the given scratch array.
+     * Must be called while holding {@link #lock}.
+     * @param src the underlying array
+     * @param scratch an array of the same type and length as src
+     * @return the number of values copied
+     */
+    protected final int drainTo(Object src, Object scratch){
+        int n = (int) (head - tail);
+        int from = (int) (tail & modulo);
+        int first = Math.min(n, modulo + 1 - from);
+        System.arraycopy(src, from, scratch, 0, first);
+        System.arraycopy(src, 0, scratch, first, n - first);
+        tail = head;
+        return n;
+    }
+
+    /**
+     *
+     * @return the number of values waiting to be consumed
+     */
+    public int size(){
+        lock.lock();
+        int n = (int) (head - tail);
+        lock.unlock();
+        return n;
+    }
+
+    /**
+     *
+     * @return whether there is nothing to consume
+     */
+    public boolean isEmpty(){
+        return size() == 0;
+    }
+
+    /**
+     *
+     * @return the capacity of the struct
+     */
+    public int capacity(){
+        return modulo + 1;
+    }
+}
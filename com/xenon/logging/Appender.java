@@ -0,0 +1,30 @@
+package com.xenon.logging;
+
+/**
+ * Destination of log events besides the log file, fed by the logging daemon.
+ * Registered with {@link LogManager#setAppenders(Appender...)}, which swaps appenders live without dropping
+ * events: the swap is done by the daemon itself, between two events.
+ * <p>
+ * Every method is called by a single thread, in order, so implementations don't need any synchronization
+ * as long as they only touch their state from these methods.
+ * @author Zenon
+ */
+public interface Appender {
+
+    /**
+     * Consumer-side. Called for each event written to the log file, after coalescing.
+     * The event may be re-used once this method returns, so fields must be copied if kept.
+     * @param event the event
+     */
+    void append(LogEvent event);
+
+    /**
+     * Consumer-side. Called each time the daemon has drained the queue, a good time to flush.
+     */
+    default void endOfBatch(){}
+
+    /**
+     * Called once the appender is removed, or at shutdown.
+     */
+    default void close(){}
+}
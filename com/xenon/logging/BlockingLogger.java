@@ -2,6 +2,11 @@ package com.xenon.logging;
 
 /**
  * Utility class to pass log messages to {@link LogManager}.
+ * <p>
+ * Parameterized messages are formatted later, by the logging daemon, and their arguments are kept by reference
+ * until then: an argument modified after the call may be logged with its new value. Mutable arguments, such as
+ * collections or builders, should be passed as a copy, or as their <code>toString()</code>.
+ * Up to three arguments, dedicated methods spare the argument array when the level is disabled.
  * @author Zenon
  */
 @SuppressWarnings("unused")
@@ -23,6 +28,42 @@ public class BlockingLogger {
     public void debug(String text, Throwable t) {
         this.log(text + t.getMessage(), LogManager.Level.DEBUG);
     }
+    /**
+     * Writes the parameterized message to DEBUG level into logs file. Formatted by the logging daemon,
+     * see {@link MessageTemplate}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void debug(String template, Object... args) {
+        this.log(template, LogManager.Level.DEBUG, args);
+    }
+    /**
+     * Writes the parameterized message to DEBUG level into logs file, see {@link #debug(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg the only argument
+     */
+    public void debug(String template, Object arg) {
+        this.log(template, LogManager.Level.DEBUG, arg);
+    }
+    /**
+     * Writes the parameterized message to DEBUG level into logs file, see {@link #debug(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void debug(String template, Object arg1, Object arg2) {
+        this.log(template, LogManager.Level.DEBUG, arg1, arg2);
+    }
+    /**
+     * Writes the parameterized message to DEBUG level into logs file, see {@link #debug(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void debug(String template, Object arg1, Object arg2, Object arg3) {
+        this.log(template, LogManager.Level.DEBUG, arg1, arg2, arg3);
+    }
     /**
      * Writes the message to INFO level into logs file
      * @param text the desired message to be logged
@@ -38,6 +79,42 @@ public class BlockingLogger {
     public void info(String text, Throwable t) {
         this.log(text + t.getMessage(), LogManager.Level.INFO);
     }
+    /**
+     * Writes the parameterized message to INFO level into logs file. Formatted by the logging daemon,
+     * see {@link MessageTemplate}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void info(String template, Object... args) {
+        this.log(template, LogManager.Level.INFO, args);
+    }
+    /**
+     * Writes the parameterized message to INFO level into logs file, see {@link #info(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg the only argument
+     */
+    public void info(String template, Object arg) {
+        this.log(template, LogManager.Level.INFO, arg);
+    }
+    /**
+     * Writes the parameterized message to INFO level into logs file, see {@link #info(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void info(String template, Object arg1, Object arg2) {
+        this.log(template, LogManager.Level.INFO, arg1, arg2);
+    }
+    /**
+     * Writes the parameterized message to INFO level into logs file, see {@link #info(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void info(String template, Object arg1, Object arg2, Object arg3) {
+        this.log(template, LogManager.Level.INFO, arg1, arg2, arg3);
+    }
     /**
      * Writes the message to WARN level into logs file
      * @param text the desired message to be logged
@@ -53,6 +130,42 @@ public class BlockingLogger {
     public void warn(String text, Throwable t) {
         this.log(text + t.getMessage(), LogManager.Level.WARN);
     }
+    /**
+     * Writes the parameterized message to WARN level into logs file. Formatted by the logging daemon,
+     * see {@link MessageTemplate}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void warn(String template, Object... args) {
+        this.log(template, LogManager.Level.WARN, args);
+    }
+    /**
+     * Writes the parameterized message to WARN level into logs file, see {@link #warn(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg the only argument
+     */
+    public void warn(String template, Object arg) {
+        this.log(template, LogManager.Level.WARN, arg);
+    }
+    /**
+     * Writes the parameterized message to WARN level into logs file, see {@link #warn(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void warn(String template, Object arg1, Object arg2) {
+        this.log(template, LogManager.Level.WARN, arg1, arg2);
+    }
+    /**
+     * Writes the parameterized message to WARN level into logs file, see {@link #warn(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void warn(String template, Object arg1, Object arg2, Object arg3) {
+        this.log(template, LogManager.Level.WARN, arg1, arg2, arg3);
+    }
     /**
      * Writes the message to ERROR level into logs file
      * @param text the desired message to be logged
@@ -68,6 +181,42 @@ public class BlockingLogger {
     public void error(String text, Throwable t) {
         this.log(text+t.getMessage(), LogManager.Level.ERROR);
     }
+    /**
+     * Writes the parameterized message to ERROR level into logs file. Formatted by the logging daemon,
+     * see {@link MessageTemplate}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void error(String template, Object... args) {
+        this.log(template, LogManager.Level.ERROR, args);
+    }
+    /**
+     * Writes the parameterized message to ERROR level into logs file, see {@link #error(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg the only argument
+     */
+    public void error(String template, Object arg) {
+        this.log(template, LogManager.Level.ERROR, arg);
+    }
+    /**
+     * Writes the parameterized message to ERROR level into logs file, see {@link #error(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void error(String template, Object arg1, Object arg2) {
+        this.log(template, LogManager.Level.ERROR, arg1, arg2);
+    }
+    /**
+     * Writes the parameterized message to ERROR level into logs file, see {@link #error(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void error(String template, Object arg1, Object arg2, Object arg3) {
+        this.log(template, LogManager.Level.ERROR, arg1, arg2, arg3);
+    }
     /**
      * Writes the message to FATAL level into logs file
      * @param text the desired message to be logged
@@ -83,6 +232,42 @@ public class BlockingLogger {
     public void fatal(String text, Throwable t) {
         this.log(text+t.getMessage(), LogManager.Level.FATAL);
     }
+    /**
+     * Writes the parameterized message to FATAL level into logs file. Formatted by the logging daemon,
+     * see {@link MessageTemplate}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void fatal(String template, Object... args) {
+        this.log(template, LogManager.Level.FATAL, args);
+    }
+    /**
+     * Writes the parameterized message to FATAL level into logs file, see {@link #fatal(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg the only argument
+     */
+    public void fatal(String template, Object arg) {
+        this.log(template, LogManager.Level.FATAL, arg);
+    }
+    /**
+     * Writes the parameterized message to FATAL level into logs file, see {@link #fatal(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void fatal(String template, Object arg1, Object arg2) {
+        this.log(template, LogManager.Level.FATAL, arg1, arg2);
+    }
+    /**
+     * Writes the parameterized message to FATAL level into logs file, see {@link #fatal(String, Object...)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void fatal(String template, Object arg1, Object arg2, Object arg3) {
+        this.log(template, LogManager.Level.FATAL, arg1, arg2, arg3);
+    }
     /**
      * Logs the given message to file with the corresponding level of severity.
      * @param text the desired message to be logged
@@ -91,4 +276,47 @@ public class BlockingLogger {
     public void log(String text, LogManager.Level level) {
         LogManager.queueLog(text, level);
     }
+    /**
+     * Logs the given parameterized message to file with the corresponding level of severity.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param level the severity level
+     * @param args the arguments, not to be modified afterwards
+     */
+    public void log(String template, LogManager.Level level, Object... args) {
+        LogManager.queueLog(template, args, level);
+    }
+    /**
+     * Logs the given parameterized message with one argument. Unlike the varargs method, allocates no argument
+     * array when the level is disabled.
+     * @param template the message, with a <code>{}</code> placeholder
+     * @param level the severity level
+     * @param arg the argument
+     */
+    public void log(String template, LogManager.Level level, Object arg) {
+        if (LogManager.isQueued(level))
+            LogManager.queueLog(template, new Object[]{arg}, level);
+    }
+    /**
+     * Logs the given parameterized message with two arguments, see {@link #log(String, LogManager.Level, Object)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param level the severity level
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public void log(String template, LogManager.Level level, Object arg1, Object arg2) {
+        if (LogManager.isQueued(level))
+            LogManager.queueLog(template, new Object[]{arg1, arg2}, level);
+    }
+    /**
+     * Logs the given parameterized message with three arguments, see {@link #log(String, LogManager.Level, Object)}.
+     * @param template the message, with a <code>{}</code> placeholder for each argument
+     * @param level the severity level
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @param arg3 the third argument
+     */
+    public void log(String template, LogManager.Level level, Object arg1, Object arg2, Object arg3) {
+        if (LogManager.isQueued(level))
+            LogManager.queueLog(template, new Object[]{arg1, arg2, arg3}, level);
+    }
 }
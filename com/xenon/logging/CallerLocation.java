@@ -0,0 +1,114 @@
+package com.xenon.logging;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Class, method and line of the code that emitted a log event.
+ * Only captured when the {@link LogLayout} in use asks for it (<code>%C</code>, <code>%M</code> or <code>%L</code>).
+ * <p>
+ * Locating the caller is done with a {@link StackWalker}, which lazily walks the stack only as far as the first
+ * frame outside this package, unlike <code>new Throwable().getStackTrace()</code> which materializes every frame.
+ * Turning a frame into a line number is costly too (it builds a {@link StackTraceElement}), so locations are
+ * cached per call site, that is per declaring class, method name and bytecode index. Repeated calls from the same
+ * site then only cost the walk, but that walk alone is far from free: with JDK 17, a log call capturing its
+ * location takes microseconds (3 to 5 µs measured by <code>CallerLocationBenchmark</code>), against well under
+ * 200 ns without. Location is meant for debugging sessions, not for a production pattern on a hot path.
+ * @author Zenon
+ */
+public final class CallerLocation {
+
+    /**
+     * Location used when no caller could be found (logging from a thread with nothing but logging frames).
+     */
+    public static final CallerLocation UNKNOWN = new CallerLocation("?", "?", -1, -1);
+
+    /**
+     * Logging frames are BlockingLogger, LogManager and the caller: 4 frames are enough in the common case.
+     */
+    private static final StackWalker WALKER = StackWalker.getInstance(Set.of(StackWalker.Option.RETAIN_CLASS_REFERENCE), 4);
+
+    /**
+     * Packages whose frames are never the caller: this one, and those of the logging APIs bridged to it,
+     * see {@link SystemLoggerFinder} and {@link JulHandler}.
+     */
+    private static final Set<String> SKIPPED_PACKAGES = Set.of(CallerLocation.class.getPackageName(),
+            "java.util.logging", "sun.util.logging.internal", "jdk.internal.logger");
+
+    /**
+     * Per-class cache of call sites. A class only holds a handful of log calls, so a copy-on-write array
+     * scanned linearly beats any map, and allocates nothing on hit.
+     */
+    private static final ClassValue<CallSites> CACHE = new ClassValue<>() {
+        @Override
+        protected CallSites computeValue(Class<?> type) {
+            return new CallSites();
+        }
+    };
+
+    private static final Function<Stream<StackWalker.StackFrame>, Optional<StackWalker.StackFrame>> FIND_CALLER =
+            frames -> frames.filter(f -> !SKIPPED_PACKAGES.contains(f.getDeclaringClass().getPackageName())
+                    && f.getDeclaringClass() != System.Logger.class).findFirst();   // default methods of System.Logger
+
+    public final String className, methodName;
+    public final int line;
+    private final int bci;
+
+    private CallerLocation(String className, String methodName, int line, int bci){
+        this.className = className;
+        this.methodName = methodName;
+        this.line = line;
+        this.bci = bci;
+    }
+
+    /**
+     * Producer-side. Finds the location of the first caller outside the logging package and the bridged APIs.
+     * @return the caller's location, or {@link #UNKNOWN}
+     */
+    static CallerLocation locate(){
+        var frame = WALKER.walk(FIND_CALLER);
+        if (frame.isEmpty())
+            return UNKNOWN;
+
+        var f = frame.get();
+        return CACHE.get(f.getDeclaringClass()).get(f);
+    }
+
+    @Override
+    public String toString() {
+        return className + '.' + methodName + ':' + line;
+    }
+
+
+    /**
+     * The known call sites of one class.
+     */
+    private static final class CallSites {
+
+        private volatile CallerLocation[] sites = new CallerLocation[0];
+
+        CallerLocation get(StackWalker.StackFrame frame){
+            final int bci = frame.getByteCodeIndex();
+            final String method = frame.getMethodName();
+
+            for (CallerLocation l : sites)
+                if (l.bci == bci && l.methodName.equals(method))
+                    return l;
+
+            var l = new CallerLocation(frame.getClassName(), method, frame.getLineNumber(), bci);
+            synchronized (this) {   // rare, once per call site
+                CallerLocation[] old = sites;
+                for (CallerLocation o : old)     // added by a thread that won the race
+                    if (o.bci == bci && o.methodName.equals(method))
+                        return o;
+                CallerLocation[] next = new CallerLocation[old.length + 1];
+                System.arraycopy(old, 0, next, 0, old.length);
+                next[old.length] = l;
+                sites = next;
+            }
+            return l;
+        }
+    }
+}
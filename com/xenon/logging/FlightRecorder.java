@@ -0,0 +1,93 @@
+package com.xenon.logging;
+
+import com.xenon.utils.readability.Values;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Appender keeping the last events the log file skips in memory, and writing them to the log file when an error
+ * comes, as the context of the error. Typically, with {@link LogManager#setFileLevel(LogManager.Level)} at INFO,
+ * DEBUG events only reach the disk around failures.
+ * <p>
+ * Events are copied into a ring of pre-allocated, mutable {@link LogEvent}s, as in {@link LogEventPool}:
+ * recording costs no I/O and no allocation. When an event of the trigger level or above is appended, or on
+ * {@link #dump()}, the events recorded since the previous dump are written to the log file, oldest first, between a
+ * header and a footer. As appenders only see an event once it was written, a dump follows the event triggering it.
+ * ERROR and FATAL events overtake the main queue, see {@link LogManager}: events queued right before one of them may
+ * only be recorded after it, and are then dumped by the next trigger.
+ * @author Zenon
+ */
+public final class FlightRecorder implements Appender {
+
+    private final LogEvent[] ring;
+    private final int mask;
+    private final LogManager.Level trigger;
+
+    /**
+     * Number of events recorded, and number of them dumped or overwritten.
+     */
+    private long recorded, dumped;
+
+    private final LogEvent marker = new LogEvent();
+
+    private FlightRecorder(int capacity, LogManager.Level trigger){
+        ring = new LogEvent[capacity];
+        for (int i = 0; i < capacity; i++)
+            ring[i] = new LogEvent();
+        mask = capacity - 1;
+        this.trigger = trigger;
+    }
+
+    /**
+     * Builds a flight recorder.
+     * @param capacity the number of events kept
+     * @param trigger the lowest level of the events dumping the recorder, usually {@link LogManager.Level#ERROR}
+     * @return the recorder, to register with {@link LogManager#setAppenders(Appender...)}
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     */
+    public static FlightRecorder build(@Values("2^k, k∈ℕ") int capacity, LogManager.Level trigger){
+        if (capacity <= 0 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("capacity must be a power of 2. Given "+capacity);
+        return new FlightRecorder(capacity, trigger);
+    }
+
+    /**
+     * Dumps the recorder as if an error came, once the events queued so far were handed to it.
+     * @return a future completed once the dump is written to the log file and flushed, see {@link LogManager#flush()}
+     */
+    public CompletableFuture<Void> dump(){
+        return LogManager.flush(() -> write("flight recorder: dump requested"));
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (!LogManager.isWritten(event.lvl)){
+            ring[(int) (recorded++ & mask)].construct(event.time, event.threadName, event.msg, event.args,
+                    event.throwable, event.lvl, event.location);
+        } else if (event.lvl.ordinal() >= trigger.ordinal())
+            write("flight recorder: context of the " + event.lvl + " above");
+    }
+
+    /**
+     * Writes the events recorded since the previous dump to the log file.
+     */
+    private void write(String reason){
+        long from = Math.max(dumped, recorded - ring.length);
+        if (from == recorded)
+            return;
+        long time = ring[(int) (from & mask)].time;
+        marker(time, reason + ", " + (recorded - from) + " events:");
+        for (long i = from; i < recorded; i++){
+            LogEvent e = ring[(int) (i & mask)];
+            LogManager.writeToFile(e);
+            e.construct(e.time, null, null, null, null, e.lvl, null);  // don't keep messages alive
+        }
+        marker(ring[(int) ((recorded - 1) & mask)].time, "flight recorder: end of dump");
+        dumped = recorded;
+    }
+
+    private void marker(long time, String msg){
+        marker.construct(time, "flight recorder", msg, null, LogManager.Level.INFO, null);
+        LogManager.writeToFile(marker);
+    }
+}
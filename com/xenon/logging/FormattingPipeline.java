@@ -0,0 +1,228 @@
+package com.xenon.logging;
+
+import com.xenon.utils.Cursor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parallel formatting of log events, with a single writer keeping the order of the file.
+ * <p>
+ * The logging daemon copies the events it drains into batches, each batch getting the next sequence number.
+ * N formatter threads claim sequence numbers with a fetch&amp;Add and turn their batch into text in parallel.
+ * A single writer thread appends the batches to the file strictly in sequence order, so formatting can use
+ * spare cores while the output stays ordered. It only pays off with cores to spare beyond the producers, the daemon
+ * and the writer: measure with <code>test.com.xenon.logger.PipelineBenchmark</code>.
+ * <p>
+ * Batches live in a ring of pre-allocated slots (events and text are re-used), each slot going through
+ * READY (filled by the daemon), FORMATTED (by a formatter), then WRITTEN (by the writer, the slot is free again).
+ * The state of a slot is a {@link Cursor} holding <code>sequence &lt;&lt; 2 | stage</code>, so that a thread
+ * waiting for a given sequence can't mistake a previous round of the same slot for it.
+ * When every slot is in use, the daemon waits for the writer: backpressure falls back on the queue.
+ * <p>
+ * Threads waiting for a stage idle with the daemon's {@link LogManager.WaitStrategy} for a while, then park until
+ * the thread publishing the stage unparks them, so an idle pipeline uses no CPU. The writer and the daemon are alone
+ * waiting for their stages, but formatters claim sequences ahead and may lap each other: two of them can wait for
+ * the READY stage of the same slot, in different rounds. Each formatter thus registers in a waiter of its own.
+ * @author Zenon
+ */
+final class FormattingPipeline {
+
+    private static final int READY = 1, FORMATTED = 2, WRITTEN = 3;
+    /**
+     * Events per batch.
+     */
+    private static final int BATCH = 64;
+    /**
+     * Number of {@link LogManager.WaitStrategy#idle()} calls before parking.
+     */
+    private static final int SPINS = 1 << 8;
+
+    private final Slot[] slots;
+    private final int mask;
+    /**
+     * next sequence to be claimed by a formatter
+     */
+    private final Cursor formatCursor = new Cursor();
+    /**
+     * number of batches written by the writer
+     */
+    private final Cursor written = new Cursor();
+    private final Waiter writtenWaiter = new Waiter();
+    /**
+     * by formatter: where it registers while waiting for a READY stage
+     */
+    private final Waiter[] formatterWaiters;
+
+    /*
+     * daemon-side
+     */
+    private long dispatchSequence;
+    private Slot current;
+
+    /**
+     * Starts the formatter threads and the writer thread, all daemons.
+     * @param formatters the number of formatter threads
+     * @throws IllegalArgumentException if formatters is not positive
+     */
+    FormattingPipeline(int formatters){
+        if (formatters <= 0)
+            throw new IllegalArgumentException("formatters must be positive. Given "+formatters);
+        int n = Math.max(4, Integer.highestOneBit(formatters * 2 - 1) << 1);   // at least 2 slots per formatter
+        slots = new Slot[n];
+        mask = n - 1;
+        for (int i = 0; i < n; i++)
+            slots[i] = new Slot(i - n);
+
+        formatterWaiters = new Waiter[formatters];
+        for (int i = 0; i < formatters; i++){
+            Waiter w = formatterWaiters[i] = new Waiter();
+            start(() -> format(w), "Log Formatter #" + i);
+        }
+        start(this::write, "Log Writer");
+    }
+
+    private static void start(Runnable r, String name){
+        Thread t = new Thread(() -> {
+            LogManager.markInternalThread();
+            r.run();
+        }, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static long state(long sequence, int stage){
+        return sequence << 2 | stage;
+    }
+
+    /**
+     * Waits for the cursor to hold the expected value, which only the thread publishing it can set.
+     * @param waiter where to register before parking, the one the publisher unparks. Only used by the calling thread
+     */
+    private static void await(Cursor cursor, long expected, Waiter waiter){
+        for (int i = 0; cursor.getAcquire() != expected; i++){
+            if (i < SPINS){
+                LogManager.idle();
+                continue;
+            }
+            waiter.cursor = cursor;
+            waiter.thread = Thread.currentThread();
+            if (cursor.getVolatile() != expected)   // volatile on both sides: either we see it, or we're unparked
+                LockSupport.park(waiter);
+            waiter.thread = null;
+        }
+    }
+
+    /**
+     * Sets the cursor, and unparks the thread waiting for it if any.
+     */
+    private static void publish(Cursor cursor, long value, Waiter waiter){
+        cursor.setVolatile(value);
+        Thread t = waiter.thread;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Daemon-side. Copies the event into the current batch, dispatching it when full.
+     * @param e the event, which may be re-used by the caller afterwards
+     */
+    void add(LogEvent e){
+        Slot s = current;
+        if (s == null){
+            s = slots[(int) (dispatchSequence & mask)];
+            await(s.state, state(dispatchSequence - slots.length, WRITTEN), s.waiters[WRITTEN]);   // previous round written
+            current = s;
+        }
+        s.events[s.count++].construct(e.time, e.threadName, e.msg, e.args, e.throwable, e.lvl, e.location);
+        if (s.count == BATCH)
+            dispatch();
+    }
+
+    /**
+     * Daemon-side. Hands the current batch, if any, to the formatters.
+     */
+    void dispatch(){
+        Slot s = current;
+        if (s == null)
+            return;
+        current = null;
+        s.state.setVolatile(state(dispatchSequence++, READY));
+        for (Waiter w : formatterWaiters){  // possibly a formatter of a later round too, which parks again
+            Thread t = w.thread;
+            if (t != null && w.cursor == s.state)
+                LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Daemon-side. Dispatches the current batch and waits for the writer to have written every dispatched batch.
+     */
+    void awaitWritten(){
+        dispatch();
+        await(written, dispatchSequence, writtenWaiter);
+    }
+
+    /**
+     * @param waiter the waiter of this formatter
+     */
+    @SuppressWarnings("InfiniteLoopStatement")
+    private void format(Waiter waiter){
+        final StringBuilder line = new StringBuilder();
+        while (true){
+            long sequence = formatCursor.getAndAdd(1);
+            Slot s = slots[(int) (sequence & mask)];
+            await(s.state, state(sequence, READY), waiter);
+
+            s.text.setLength(0);
+            for (int i = 0; i < s.count; i++){
+                LogManager.format(s.events[i], line, s.text);
+                s.ends[i] = s.text.length();
+                LogEvent e = s.events[i];
+                e.construct(e.time, null, null, null, null, e.lvl, null);  // the writer indexes time and level
+            }
+            publish(s.state, state(sequence, FORMATTED), s.waiters[FORMATTED]);
+        }
+    }
+
+    @SuppressWarnings("InfiniteLoopStatement")
+    private void write(){
+        for (long sequence = 0; ; sequence++){
+            Slot s = slots[(int) (sequence & mask)];
+            await(s.state, state(sequence, FORMATTED), s.waiters[FORMATTED]);
+
+            LogManager.emit(s.text);
+            for (int i = 0, start = 0; i < s.count; start = s.ends[i++])
+                LogManager.index(s.events[i], s.text, start, s.ends[i]);
+            s.count = 0;
+            publish(s.state, state(sequence, WRITTEN), s.waiters[WRITTEN]);
+            publish(written, sequence + 1, writtenWaiter);
+        }
+    }
+
+    private static final class Slot {
+        final LogEvent[] events = new LogEvent[BATCH];
+        final StringBuilder text = new StringBuilder();
+        final int[] ends = new int[BATCH];    // end of each event's text
+        final Cursor state;
+        /**
+         * by stage: the thread waiting for it, for FORMATTED (the writer) and WRITTEN (the daemon) only,
+         * formatters have their own
+         */
+        final Waiter[] waiters = {null, null, new Waiter(), new Waiter()};
+        int count;
+
+        Slot(long previousRound){
+            state = new Cursor(state(previousRound, WRITTEN));
+            for (int i = 0; i < BATCH; i++)
+                events[i] = new LogEvent();
+        }
+    }
+
+    private static final class Waiter {
+        volatile Thread thread;
+        /**
+         * the cursor awaited, written before thread
+         */
+        volatile Cursor cursor;
+    }
+}
@@ -0,0 +1,89 @@
+package com.xenon.logging;
+
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * {@link java.util.logging} handler queuing records to {@link LogManager} instead of writing them synchronously.
+ * See {@link #install()}.
+ * <p>
+ * Levels map to {@link LogManager.Level}: FINEST to FINE to DEBUG, CONFIG and INFO to INFO, WARNING to WARN and
+ * SEVERE to ERROR. The level is checked against {@link LogManager#isEnabled(LogManager.Level)} before the message
+ * is formatted or queued. The message is localized and its parameters formatted by the caller, as
+ * {@link Formatter#formatMessage(LogRecord)} does.
+ * @author Zenon
+ */
+public class JulHandler extends Handler {
+
+    /**
+     * Only used for {@link Formatter#formatMessage(LogRecord)}.
+     */
+    private static final Formatter messages = new SimpleFormatter();
+
+    /**
+     * Replaces the handlers of the root logger with a single {@link JulHandler}, and sets the root logger's level
+     * to match {@link LogManager}'s current level, so that JUL drops disabled records before even creating them:
+     * FINE for DEBUG, CONFIG for INFO, WARNING for WARN and SEVERE above. FINER and FINEST, JUL's tracing levels,
+     * are then dropped too, loggers setting their own level excepted.
+     * Call it again after {@link LogManager#setLevel(LogManager.Level)} to keep the two in sync.
+     */
+    public static void install(){
+        Logger root = Logger.getLogger("");
+        for (Handler h : root.getHandlers()){
+            root.removeHandler(h);
+            h.close();
+        }
+        root.addHandler(new JulHandler());
+
+        if (LogManager.isEnabled(LogManager.Level.DEBUG))
+            root.setLevel(Level.FINE);
+        else if (LogManager.isEnabled(LogManager.Level.INFO))
+            root.setLevel(Level.CONFIG);
+        else if (LogManager.isEnabled(LogManager.Level.WARN))
+            root.setLevel(Level.WARNING);
+        else
+            root.setLevel(Level.SEVERE);
+    }
+
+    /**
+     * @param level a JUL level
+     * @return the matching level, or null for {@link Level#OFF}
+     */
+    static LogManager.Level map(Level level){
+        final int v = level.intValue();
+        if (v == Level.OFF.intValue())
+            return null;
+        if (v >= Level.SEVERE.intValue())
+            return LogManager.Level.ERROR;
+        if (v >= Level.WARNING.intValue())
+            return LogManager.Level.WARN;
+        if (v >= Level.CONFIG.intValue())
+            return LogManager.Level.INFO;
+        return LogManager.Level.DEBUG;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        LogManager.Level l = map(record.getLevel());
+        if (l == null || !LogManager.isEnabled(l) || !isLoggable(record))
+            return;
+        String msg = messages.formatMessage(record);
+        Throwable thrown = record.getThrown();
+        LogManager.queueLog(thrown == null ? msg : msg + thrown.getMessage(), l);
+    }
+
+    /**
+     * Does nothing, see {@link LogManager#flush()}.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,107 @@
+package com.xenon.logging;
+
+import com.xenon.collections.RecordTorus;
+import com.xenon.utils.FilesUtils;
+import com.xenon.utils.UnsafeBufferedWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Collector process draining the shared ring buffer of every local JVM that called
+ * {@link LogManager#share(Path, int)} into a single log file.
+ * One collector per ring file. Lines are prefixed with the pid of the process that emitted them.
+ * <p>
+ * Usage: <code>java com.xenon.logging.LogCollector &lt;ringFile&gt; &lt;capacity&gt; &lt;logFile&gt;</code>
+ * <p>
+ * A process killed between claiming and committing a record leaves it claimed forever, which stalls the
+ * collector on it: the ring file should then be deleted once every process is restarted.
+ * @author Zenon
+ */
+public class LogCollector implements RecordTorus.Handler {
+
+    /**
+     * Time waited when the ring is empty, in nanoseconds.
+     */
+    private static final long IDLE_PARK = 100_000;
+
+    private final RecordTorus ring;
+    private final UnsafeBufferedWriter writer;
+    private final LogLayout layout;
+    private final LogEvent event = new LogEvent();
+    private final StringBuilder line = new StringBuilder();
+    private volatile boolean running = true;
+
+    /**
+     * @param ring the shared ring
+     * @param writer the writer of the collected log file
+     * @param layout the layout of the written lines
+     */
+    public LogCollector(RecordTorus ring, UnsafeBufferedWriter writer, LogLayout layout){
+        this.ring = ring;
+        this.writer = writer;
+        this.layout = layout;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3){
+            System.err.println("Usage: LogCollector <ringFile> <capacity> <logFile>");
+            System.exit(1);
+        }
+        RecordTorus ring = FilesUtils.mapRecordTorus(Paths.get(args[0]), Integer.parseInt(args[1]));
+        UnsafeBufferedWriter writer = FilesUtils.newUnsafeBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        LogCollector collector = new LogCollector(ring, writer, LogLayout.DEFAULT);
+
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            collector.stop();
+            try {
+                main.join(1000);
+            } catch (InterruptedException ignored) {}
+        }));
+        collector.run();
+    }
+
+    /**
+     * Drains the ring until {@link #stop()} is called, then drains what's left and closes the writer.
+     */
+    public void run(){
+        try {
+            while (running){
+                if (ring.read(this) == 0){
+                    writer.flush();
+                    LockSupport.parkNanos(IDLE_PARK);
+                }
+            }
+            ring.read(this);
+            writer.realClose();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Makes {@link #run()} return once the ring is drained.
+     */
+    public void stop(){
+        running = false;
+    }
+
+    @Override
+    public void onRecord(ByteBuffer buffer, int offset, int length, int pid) {
+        LogEventCodec.decode(buffer, offset, event);
+        event.threadName = pid + "/" + event.threadName;
+        try {
+            writer.write(layout.format(event, line).append('\n').toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        line.setLength(0);
+    }
+}
@@ -1,13 +1,16 @@
 package com.xenon.logging;
 
-import java.time.LocalTime;
-
 public class LogEvent {
 
     public long time;
     public String threadName, msg;
+    /**
+     * The arguments of the message if it's a template, see {@link MessageTemplate}. null otherwise.
+     */
+    public Object[] args;
     public Throwable throwable;
     public LogManager.Level lvl;
+    public CallerLocation location;
 
     /**
      * Constructs a LogEvent object.
@@ -16,31 +19,56 @@ public class LogEvent {
      * @param threadName the name of the producer thread
      * @param msg the log message
      * @param throwable the throwable associated with the event
+     * @param location the location of the caller, null if not captured
      */
-    public void construct(long time, String threadName, String msg, Throwable throwable, LogManager.Level lvl){
+    public void construct(long time, String threadName, String msg, Throwable throwable, LogManager.Level lvl,
+                          CallerLocation location){
+        construct(time, threadName, msg, null, throwable, lvl, location);
+    }
+
+    /**
+     * Constructs a LogEvent object with a parameterized message, formatted by the consumer.
+     * Producer side.
+     * @param time the time the log was emitted
+     * @param threadName the name of the producer thread
+     * @param msg the log message, a template if args isn't null
+     * @param args the arguments of the template, null if msg isn't one
+     * @param throwable the throwable associated with the event
+     * @param location the location of the caller, null if not captured
+     */
+    public void construct(long time, String threadName, String msg, Object[] args, Throwable throwable,
+                          LogManager.Level lvl, CallerLocation location){
         this.time = time;
         this.threadName = threadName;
         this.msg = msg;
+        this.args = args;
         this.throwable = throwable;
         this.lvl = lvl;
+        this.location = location;
+    }
+
+    /**
+     * Appends the message, its template formatted if it has arguments.
+     * @param b the builder the message is appended to
+     * @return the given builder
+     */
+    public StringBuilder appendMessage(StringBuilder b){
+        return args == null ? b.append(msg) : MessageTemplate.of(msg).format(args, b);
+    }
+
+    /**
+     * @return the message, its template formatted if it has arguments
+     */
+    public String getMessage(){
+        return args == null ? msg : appendMessage(new StringBuilder()).toString();
     }
 
     /**
      *
-     * @return the formatted message of the log
+     * @return the formatted message of the log, following {@link LogLayout#DEFAULT}
      */
     public String getText(){
-        var b = new StringBuilder("<")
-                .append("> [")
-                .append(threadName)
-                .append('/')
-                .append(lvl)
-                .append("] : ")
-                .append(msg);
-        if (throwable != null)
-            b.append(throwable.getMessage());
-
-        return b.toString();
+        return LogLayout.DEFAULT.format(this, new StringBuilder()).toString();
     }
 
 }
@@ -0,0 +1,98 @@
+package com.xenon.logging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary form of a {@link LogEvent}, for the byte-oriented structs such as
+ * {@link com.xenon.collections.RecordTorus}.
+ * <p>
+ * Layout: <code>long time, int level, string threadName, string msg, string throwableMessage</code>,
+ * a string being an <code>int</code> length in chars (-1 for null) followed by its UTF-16 chars.
+ * Only absolute methods are used, so a shared buffer can be written concurrently at different offsets.
+ * Encoding allocates nothing. The throwable itself can't be serialized, only its message is kept.
+ * @author Zenon
+ */
+public final class LogEventCodec {
+
+    private static final LogManager.Level[] LEVELS = LogManager.Level.values();
+
+    private LogEventCodec(){}
+
+    /**
+     * @param threadName the name of the producer thread
+     * @param msg the log message
+     * @param throwable the throwable associated with the event, may be null
+     * @return the number of bytes {@link #encode} will write
+     */
+    public static int encodedLength(String threadName, String msg, Throwable throwable){
+        return 8 + 4 + length(threadName) + length(msg) + length(throwable == null ? null : throwable.getMessage());
+    }
+
+    private static int length(String s){
+        return 4 + (s == null ? 0 : s.length() << 1);
+    }
+
+    /**
+     * Writes an event.
+     * @param b the buffer
+     * @param offset where to write, with at least {@link #encodedLength} bytes of room
+     * @param time the time the log was emitted
+     * @param threadName the name of the producer thread
+     * @param msg the log message
+     * @param throwable the throwable associated with the event, may be null
+     * @param lvl the level of the event
+     * @return the offset following the event
+     */
+    public static int encode(ByteBuffer b, int offset, long time, String threadName, String msg,
+                             Throwable throwable, LogManager.Level lvl){
+        b.putLong(offset, time);
+        b.putInt(offset + 8, lvl.ordinal());
+        offset = put(b, offset + 12, threadName);
+        offset = put(b, offset, msg);
+        return put(b, offset, throwable == null ? null : throwable.getMessage());
+    }
+
+    private static int put(ByteBuffer b, int offset, String s){
+        if (s == null){
+            b.putInt(offset, -1);
+            return offset + 4;
+        }
+        final int n = s.length();
+        b.putInt(offset, n);
+        offset += 4;
+        for (int i = 0; i < n; i++, offset += 2)
+            b.putChar(offset, s.charAt(i));
+        return offset;
+    }
+
+    /**
+     * Reads an event back. The throwable's message, if any, is appended to the message and
+     * {@link LogEvent#throwable} is left null.
+     * @param b the buffer
+     * @param offset where the event starts
+     * @param into the event to fill
+     */
+    public static void decode(ByteBuffer b, int offset, LogEvent into){
+        long time = b.getLong(offset);
+        LogManager.Level lvl = LEVELS[b.getInt(offset + 8)];
+        offset += 12;
+        String threadName = get(b, offset);
+        offset += length(threadName);
+        String msg = get(b, offset);
+        offset += length(msg);
+        String throwableMessage = get(b, offset);
+
+        into.construct(time, threadName, throwableMessage == null ? msg : msg + throwableMessage, null, lvl, null);
+    }
+
+    private static String get(ByteBuffer b, int offset){
+        final int n = b.getInt(offset);
+        if (n < 0)
+            return null;
+        char[] chars = new char[n];
+        offset += 4;
+        for (int i = 0; i < n; i++, offset += 2)
+            chars[i] = b.getChar(offset);
+        return new String(chars);
+    }
+}
@@ -3,14 +3,25 @@ package com.xenon.logging;
 import com.xenon.collections.AsyncPool;
 import com.xenon.utils.readability.Values;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
+ * A pool of mutable {@link LogEvent}s, filled by any number of producers and polled by a single consumer.
+ * A producer {@link #claim() claims} a sequence, fills the event it {@link #get(long) gets} for it, then
+ * {@link #publish(long) publishes} it: the consumer only polls published events, in claiming order.
  * @author Zenon
  */
 public class LogEventPool extends AsyncPool<LogEvent> {
 
-    protected int tail;
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * For each slot, the last sequence published in it, -1 if none.
+     */
+    private final long[] published;
 
     /**
      * Creates a pool object
@@ -27,30 +38,68 @@ public class LogEventPool extends AsyncPool<LogEvent> {
         super(capacity);
         for (int i = 0; i < capacity; i++)
             data[i] = new LogEvent();
+        published = new long[capacity];
+        Arrays.fill(published, -1);
     }
 
+    /**
+     * Use {@link #claim()}, {@link #get(long)} and {@link #publish(long)} instead of this method: an event
+     * retrieved in one step couldn't be published once filled.
+     * @return nothing
+     * @throws UnsupportedOperationException always
+     */
     @Override
     public LogEvent retrieve() {
-        int c = head.f$i();
-        c &= modulo;
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Producer-side method to claim the next event of the pool. The consumer won't poll it before it's
+     * {@link #publish(long) published}.
+     * @return the claimed sequence
+     */
+    public long claim(){
+        return head.getAndAdd(1);  // 64-bit cursor, never wraps
+    }
 
-        return (LogEvent) data[c];
+    /**
+     * @param sequence a sequence returned by {@link #claim()}
+     * @return the event to fill for this sequence
+     */
+    public LogEvent get(long sequence){
+        return (LogEvent) data[(int) (sequence & modulo)];
+    }
+
+    /**
+     * Producer-side method to hand the filled event over to the consumer.
+     * @param sequence a sequence returned by {@link #claim()}, whose event is filled
+     */
+    public void publish(long sequence){
+        PUBLISHED.setRelease(published, (int) (sequence & modulo), sequence);
     }
 
+    /**
+     * {@inheritDoc}
+     * Single consumer: {@link #tail} is only written by the consumer, so a plain read is enough for it.
+     * If producers lapped the consumer, the overwritten events are skipped.
+     * @return the object at the cursor position, or null if the pool has nothing to consume or if that object
+     * isn't published yet
+     */
     @Override
     public LogEvent poll() {
-        int c = head.get();
-        int c1 = c & modulo;
+        long h = head.getAcquire();
+        long t = tail.get();
 
-        if (c != c1)
-            head.cas(c, c1);
-
-        tail &= modulo;
-        if (tail == c1)
+        if (t == h)
             return null;
+        if (h - t > modulo + 1)  // lapped
+            t = h - modulo - 1;
 
-        LogEvent event = (LogEvent) data[tail];
-        tail++;
+        final int slot = (int) (t & modulo);
+        if ((long) PUBLISHED.getAcquire(published, slot) != t)   // claimed, still being filled
+            return null;
+        LogEvent event = (LogEvent) data[slot];
+        tail.setRelease(t + 1);
 
         return event;
     }
@@ -0,0 +1,167 @@
+package com.xenon.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writer of the sidecar index of a log file, <code>&lt;log file&gt;.idx</code>, read by {@link LogIndexReader}.
+ * See {@link LogManager#enableIndex(int)}.
+ * <p>
+ * The index is a sequence of blocks, each one covering a run of consecutive events of the log:
+ * <pre>
+ * long offset        byte offset in the log of the block's first event
+ * int length         byte length of the block's events in the log
+ * long minTime       smallest time of the block's events
+ * long maxTime       biggest time of the block's events
+ * int count          number of events
+ * int levels         bitmap of the levels present, bit i for {@link LogManager.Level} of ordinal i
+ * byte[count]        level ordinal of each event
+ * int[count]         time of each event minus minTime
+ * int[count]         byte length of each event in the log
+ * </pre>
+ * after an 8-byte header (magic and version). A reader skips whole blocks from their time range and level bitmap,
+ * and only decodes the matching events of the others. Events are delimited by their length rather than by line
+ * feeds, which messages may contain. A block is closed early rather than let its time range or its length
+ * overflow an int, e.g. after a clock jump: blocks hold <code>eventsPerBlock</code> events at most.
+ * <p>
+ * Only the thread writing the log calls {@link #event(long, LogManager.Level, long)}, once per event written.
+ * @author Zenon
+ */
+final class LogIndex {
+
+    static final int MAGIC = 0x58494458, VERSION = 1;   // "XIDX"
+
+    private final DataOutputStream out;
+    private final int eventsPerBlock;
+
+    /**
+     * byte offset of the end of the log
+     */
+    private long offset;
+
+    /*
+     * current block
+     */
+    private long blockOffset, minTime, maxTime;
+    private int count, levels;
+    private byte[] eventLevels;
+    private long[] eventTimes;
+    private int[] eventLengths;
+
+    /**
+     * Opens the index of the given log file, appending to it if it already exists and the log isn't empty.
+     * @param logFile the log file, before anything is written to it
+     * @param eventsPerBlock the number of events per block, at least
+     * @throws IOException if the index can't be opened
+     */
+    LogIndex(Path logFile, int eventsPerBlock) throws IOException {
+        Path file = indexOf(logFile);
+        offset = Files.exists(logFile) ? Files.size(logFile) : 0;
+        boolean fresh = offset == 0 || !Files.exists(file);
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, fresh ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND)));
+        if (fresh){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        this.eventsPerBlock = eventsPerBlock;
+        eventLevels = new byte[eventsPerBlock];
+        eventTimes = new long[eventsPerBlock];
+        eventLengths = new int[eventsPerBlock];
+    }
+
+    /**
+     * @param logFile a log file
+     * @return the path of its index
+     */
+    static Path indexOf(Path logFile){
+        return logFile.resolveSibling(logFile.getFileName() + ".idx");
+    }
+
+    /**
+     * Tells an event was written to the log.
+     * @param time the time of the event
+     * @param level the level of the event
+     * @param bytes the size of its text in the log
+     * @throws IOException if writing the index fails
+     */
+    void event(long time, LogManager.Level level, long bytes) throws IOException {
+        if (count > 0 && (Math.max(maxTime, time) - Math.min(minTime, time) > Integer.MAX_VALUE
+                || offset + bytes - blockOffset > Integer.MAX_VALUE))
+            writeBlock();
+        if (count == 0){
+            blockOffset = offset;
+            minTime = maxTime = time;
+        }
+        eventLevels[count] = (byte) level.ordinal();
+        eventTimes[count] = time;
+        eventLengths[count] = (int) bytes;
+        count++;
+        offset += bytes;
+        levels |= 1 << level.ordinal();
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        if (count == eventsPerBlock)
+            writeBlock();
+    }
+
+    /**
+     * Ends the current block, and flushes the index.
+     * @throws IOException if writing the index fails
+     */
+    void flush() throws IOException {
+        if (count > 0)
+            writeBlock();
+        out.flush();
+    }
+
+    void close() throws IOException {
+        try (out){
+            flush();
+        }
+    }
+
+    /**
+     * @param text some text
+     * @return the size of the text encoded in UTF-8
+     */
+    static long utf8Length(CharSequence text){
+        return utf8Length(text, 0, text.length());
+    }
+
+    /**
+     * @param text some text
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @return the size of the range of text encoded in UTF-8
+     */
+    static long utf8Length(CharSequence text, int start, int end){
+        long bytes = end - start;
+        for (int i = start; i < end; i++){
+            char c = text.charAt(i);
+            if (c >= 0x80)
+                bytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;   // a surrogate pair is 4 bytes
+        }
+        return bytes;
+    }
+
+    private void writeBlock() throws IOException {
+        out.writeLong(blockOffset);
+        out.writeInt((int) (offset - blockOffset));
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeInt(count);
+        out.writeInt(levels);
+        out.write(eventLevels, 0, count);
+        for (int i = 0; i < count; i++)
+            out.writeInt((int) (eventTimes[i] - minTime));     // fits, see event()
+        for (int i = 0; i < count; i++)
+            out.writeInt(eventLengths[i]);
+        count = 0;
+        levels = 0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.xenon.logging;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Range queries over a log file written with {@link LogManager#enableIndex(int)}: the log and its index are
+ * memory-mapped, blocks of events outside the time range or without any event of the wanted levels are skipped from
+ * the index alone, and only the matching events of the remaining blocks are read from the log.
+ * <p>
+ * The files are mapped as they are when opening the reader: events written afterwards aren't seen, nor are events
+ * not indexed yet, see {@link LogManager#enableIndex(int)}. Any pattern works, the index doesn't rely on the text.
+ * Not thread-safe.
+ * @author Zenon
+ */
+public class LogIndexReader {
+
+    /**
+     * Size of the segments the log is mapped by, as a single mapping can't exceed 2 GiB.
+     */
+    private static final long SEGMENT = 1L << 30;
+    private static final int BLOCK_HEADER = 8 + 4 + 8 + 8 + 4 + 4;
+
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] log;
+    private final long logSize;
+    private byte[] scratch = new byte[1 << 16];
+
+    /**
+     * Maps the log file and its index.
+     * @param logFile the log file, its index being <code>&lt;log file&gt;.idx</code>
+     * @throws IOException if a file can't be opened or mapped, or if the index is invalid
+     */
+    public LogIndexReader(Path logFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(LogIndex.indexOf(logFile), StandardOpenOption.READ)){
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (index.limit() < 8 || index.getInt(0) != LogIndex.MAGIC || index.getInt(4) != LogIndex.VERSION)
+            throw new IOException("not a log index: " + LogIndex.indexOf(logFile));
+
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)){
+            logSize = channel.size();
+            log = new MappedByteBuffer[(int) ((logSize + SEGMENT - 1) / SEGMENT)];
+            for (int i = 0; i < log.length; i++)
+                log[i] = channel.map(FileChannel.MapMode.READ_ONLY, i * SEGMENT, Math.min(SEGMENT, logSize - i * SEGMENT));
+        }
+    }
+
+    /**
+     * Hands the events of the given time range and levels to the consumer, in the order of the log.
+     * Each event is given as written, without its final line feed: wrapped lines stay joined by <code>"\n\t"</code>.
+     * @param from the start of the time range, inclusive, in milliseconds since the epoch
+     * @param to the end of the time range, inclusive, in milliseconds since the epoch
+     * @param minLevel the lowest level of the events
+     * @param consumer the consumer of the events
+     */
+    public void query(long from, long to, LogManager.Level minLevel, Consumer<String> consumer){
+        final int levelMask = -1 << minLevel.ordinal();
+        final int limit = index.limit();
+        int position = 8;
+        while (position + BLOCK_HEADER <= limit){
+            long offset = index.getLong(position);
+            int length = index.getInt(position + 8);
+            long minTime = index.getLong(position + 12), maxTime = index.getLong(position + 20);
+            int count = index.getInt(position + 28), levels = index.getInt(position + 32);
+            int events = position + BLOCK_HEADER, next = events + count * 9;
+            if (next > limit || offset + length > logSize)
+                return;     // partially written
+            position = next;
+
+            if (maxTime < from || minTime > to || (levels & levelMask) == 0)
+                continue;
+            read(offset, length);
+            final int times = events + count, lengths = times + 4 * count;
+            for (int i = 0, start = 0; i < count; i++){
+                int size = index.getInt(lengths + 4 * i);
+                long time = minTime + index.getInt(times + 4 * i);
+                if (index.get(events + i) >= minLevel.ordinal() && time >= from && time <= to)
+                    consumer.accept(new String(scratch, start, size - 1, StandardCharsets.UTF_8));   // no final '\n'
+                start += size;
+            }
+        }
+    }
+
+    /**
+     * @see #query(long, long, LogManager.Level, Consumer)
+     * @return the events of the given time range and levels
+     */
+    public List<String> query(long from, long to, LogManager.Level minLevel){
+        List<String> events = new ArrayList<>();
+        query(from, to, minLevel, events::add);
+        return events;
+    }
+
+    /**
+     * Copies a block of the log into {@link #scratch}, possibly across two segments.
+     */
+    private void read(long offset, int length){
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+        for (int done = 0; done < length;){
+            long at = offset + done;
+            MappedByteBuffer segment = log[(int) (at / SEGMENT)];
+            int in = (int) (at % SEGMENT), n = Math.min(length - done, segment.limit() - in);
+            segment.get(in, scratch, done, n);
+            done += n;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.xenon.logging;
+
+import com.xenon.utils.DecimalUtils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+
+/**
+ * Turns a {@link LogEvent} into a line of text, following a pattern parsed once at construction.
+ * <p>
+ * Supported conversions:
+ * <ul>
+ *     <li><code>%d</code> the time the event was emitted, as <code>HH:mm:ss</code></li>
+ *     <li><code>%t</code> the name of the producer thread</li>
+ *     <li><code>%p</code> the level</li>
+ *     <li><code>%m</code> the message, followed by the throwable's message if any.
+ *     Templates are formatted here, see {@link MessageTemplate}</li>
+ *     <li><code>%C</code>, <code>%M</code>, <code>%L</code> the caller's class, method and line.
+ *     Opt-in: the caller is only located when the pattern contains one of them, and each log call then walks the
+ *     stack, which costs microseconds, see {@link CallerLocation}</li>
+ *     <li><code>%%</code> a single <code>%</code></li>
+ * </ul>
+ * @author Zenon
+ */
+public final class LogLayout {
+
+    /**
+     * The default layout, <code>&lt;%d&gt; [%t/%p] : %m</code>.
+     */
+    public static final LogLayout DEFAULT = new LogLayout("<%d> [%t/%p] : %m");
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /**
+     * The last second formatted by <code>%d</code>: events come by bursts within the same second, whose time zone
+     * offset is then looked up once instead of for each event. Immutable, so formatting threads can share it without
+     * locking.
+     */
+    private static volatile LocalSecond lastSecond = new LocalSecond(Long.MIN_VALUE, 0);
+
+    private final String pattern;
+    /**
+     * literals[i] is written before conversions[i]. literals has one more element than conversions: the trailing text.
+     */
+    private final String[] literals;
+    private final char[] conversions;
+    private final boolean needsLocation;
+
+    /**
+     * Parses a new layout.
+     * @param pattern the pattern, see the class documentation
+     * @throws IllegalArgumentException if the pattern contains an unknown conversion
+     */
+    public LogLayout(String pattern){
+        this.pattern = pattern;
+        var literals = new ArrayList<String>();
+        var conversions = new StringBuilder();
+        var literal = new StringBuilder();
+        boolean location = false;
+
+        for (int i = 0; i < pattern.length(); i++){
+            char c = pattern.charAt(i);
+            if (c != '%' || i + 1 == pattern.length()){
+                literal.append(c);
+                continue;
+            }
+            c = pattern.charAt(++i);
+            switch (c){
+                case '%' -> literal.append('%');
+                case 'd', 't', 'p', 'm', 'C', 'M', 'L' -> {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    conversions.append(c);
+                    location |= c == 'C' || c == 'M' || c == 'L';
+                }
+                default -> throw new IllegalArgumentException("Unknown conversion %" + c + " in " + pattern);
+            }
+        }
+        literals.add(literal.toString());
+
+        this.literals = literals.toArray(new String[0]);
+        this.conversions = conversions.toString().toCharArray();
+        this.needsLocation = location;
+    }
+
+    /**
+     * @return whether producers should capture their {@link CallerLocation} for this layout
+     */
+    public boolean needsLocation(){
+        return needsLocation;
+    }
+
+    /**
+     * Formats the event.
+     * @param e the event
+     * @param b the builder the line is appended to
+     * @return the given builder
+     */
+    public StringBuilder format(LogEvent e, StringBuilder b){
+        for (int i = 0; i < conversions.length; i++){
+            b.append(literals[i]);
+            CallerLocation l = e.location == null ? CallerLocation.UNKNOWN : e.location;
+            switch (conversions[i]){
+                case 'd' -> time(e.time, b);
+                case 't' -> b.append(e.threadName);
+                case 'p' -> b.append(e.lvl);
+                case 'm' -> {
+                    e.appendMessage(b);
+                    if (e.throwable != null)
+                        b.append(e.throwable.getMessage());
+                }
+                case 'C' -> b.append(l.className);
+                case 'M' -> b.append(l.methodName);
+                case 'L' -> DecimalUtils.append(b, l.line);
+            }
+        }
+        return b.append(literals[conversions.length]);
+    }
+
+    /**
+     * Appends the time as <code>HH:mm:ss</code>, in the default time zone.
+     * @param time a time in milliseconds since the epoch
+     */
+    private static void time(long time, StringBuilder b){
+        final long second = Math.floorDiv(time, 1000);
+        LocalSecond last = lastSecond;
+        if (last.second != second){
+            int offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(second)).getTotalSeconds();
+            lastSecond = last = new LocalSecond(second, (int) Math.floorMod(second + offset, SECONDS_PER_DAY));
+        }
+        final int s = last.secondOfDay;
+        DecimalUtils.appendPadded(b, s / 3600, 2).append(':');
+        DecimalUtils.appendPadded(b, s / 60 % 60, 2).append(':');
+        DecimalUtils.appendPadded(b, s % 60, 2);
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    private static final class LocalSecond {
+        final long second;
+        /**
+         * in the default time zone
+         */
+        final int secondOfDay;
+
+        LocalSecond(long second, int secondOfDay){
+            this.second = second;
+            this.secondOfDay = secondOfDay;
+        }
+    }
+}
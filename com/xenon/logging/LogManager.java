@@ -1,51 +1,101 @@
 package com.xenon.logging;
 
-import com.xenon.collections.BlockingTorus;
+import com.xenon.collections.RecordTorus;
+import com.xenon.collections.SegmentedTorus;
 import com.xenon.utils.FilesUtils;
 import com.xenon.utils.UnsafeBufferedWriter;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Main logging class, though the user will interact with {@link BlockingLogger}.
+ * <p>
+ * Nothing is started when the class loads: the log file is opened and the logging daemon started on the first
+ * log call, so that short-lived tools that never log pay nothing. Everything can be configured before that,
+ * programmatically or with {@link #configure(Properties)}, and most settings can also be changed live:
+ * those touching the daemon's state are handed to the daemon itself, which applies them between two events,
+ * so nothing in flight is dropped.
+ * <p>
+ * If the system property <code>xenon.log.config</code> names a properties file, it is applied at startup.
+ * <p>
+ * {@link Level#ERROR} and {@link Level#FATAL} events take a separate lane, which the daemon drains before the main
+ * queue and flushes right away: they may reach the file before lower level events logged just before them.
  * @author Zenon
  */
 @SuppressWarnings("unused")
 public class LogManager {
 
-    static{
-        Path root = Paths.get("./logs");    // default configuration
-        build(root, "latest.txt");
-    }
+    /*
+     * Configuration, written under the class lock. Default is "./logs" for directory and "./logs/latest.txt" for file.
+     */
+    private static Path logDirectory = Paths.get("./logs");
+    private static String logFileName = "latest.txt";
+    private static int capacity = 16;
+
+    /**
+     * Whether the log file is opened and the daemon started, see {@link #start()}.
+     */
+    private static volatile boolean started;
+    /**
+     * Whether {@link #start()} is running.
+     */
+    private static volatile boolean starting;
+    /**
+     * Events logged while starting, by the starting thread itself or by threads it waits for, e.g. JDK components
+     * logging through {@link SystemLoggerFinder}. Queued once started, see {@link #queueStartupEvents()}.
+     */
+    private static final ConcurrentLinkedQueue<LogEvent> startupEvents = new ConcurrentLinkedQueue<>();
 
     /**
      * Sets the log directory as well as the log file. Can be set anytime.
      * Default is "./logs" for directory and "./logs/latest.txt" for file.
+     * Once logging started, the new file is opened right away, and the daemon switches to it after writing
+     * every event already queued to the previous one.
      * @param logDirectory the new log directory
      * @param logFileName the new log file name inside the log directory. The path leading to the log file should
      *                    be <code>logDirectory.resolve(logFileName)</code>.
      * @throws IllegalStateException if a <code>IOException</code> occurs
      */
-    public static void build(Path logDirectory, String logFileName){
+    public static synchronized void build(Path logDirectory, String logFileName){
+        LogManager.logDirectory = logDirectory;
+        LogManager.logFileName = logFileName;
+        if (started){
+            UnsafeBufferedWriter writer = open(logDirectory, logFileName);
+            LogIndex index = openIndex(logDirectory, logFileName);
+            submit(() -> swapWriter(writer, index));
+        }
+    }
+
+    private static UnsafeBufferedWriter open(Path logDirectory, String logFileName){
         Path logFile = logDirectory.resolve(logFileName);
 
         try{
             if (!Files.exists(logDirectory))
-                Files.createDirectory(logDirectory);
+                Files.createDirectories(logDirectory);
 
             if (!Files.exists(logFile))
                 Files.createFile(logFile);
 
-            bufferedWriter = FilesUtils.newUnsafeBufferedWriter(
+            return FilesUtils.newDoubleBufferedWriter(
                     logFile,
                     StandardCharsets.UTF_8,
+                    forceOnFlush,
                     StandardOpenOption.APPEND);
 
         }catch(IOException exception){
@@ -53,6 +103,465 @@ public class LogManager {
         }
     }
 
+    /**
+     * Opens the index of the log file, before anything is written to it.
+     * @return the index, null if {@link #enableIndex(int)} wasn't called
+     */
+    private static LogIndex openIndex(Path logDirectory, String logFileName){
+        int block = indexBlock;
+        if (block == 0)
+            return null;
+        try {
+            return new LogIndex(logDirectory.resolve(logFileName), block);
+        } catch (IOException exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Opens the log file and starts the logging daemon, unless already done. Called by the first log call.
+     */
+    private static synchronized void start(){
+        if (started)
+            return;
+        starting = true;
+        try {
+            String config = System.getProperty("xenon.log.config");
+            if (config != null)
+                configure(Paths.get(config));
+
+            bufferedWriter = open(logDirectory, logFileName);
+            index = openIndex(logDirectory, logFileName);
+            ringBuffer = SegmentedTorus.build(capacity);
+            priorityLane = SegmentedTorus.build(PRIORITY_CAPACITY);
+            loggingThread = new LogBackground("Logging Thread");
+            started = true;
+        } finally {
+            starting = false;
+        }
+        queueStartupEvents();
+    }
+
+    /**
+     * Queues the events logged while starting, now that the level is configured.
+     */
+    private static void queueStartupEvents(){
+        for (LogEvent e; (e = startupEvents.poll()) != null;)
+            if (isEnabled(e.lvl))
+                queue(e);
+    }
+
+    /**
+     * Sets the capacity of the queue's ring, before logging starts. Default is 16.
+     * Bursts bigger than the ring spill into recycled segments, see {@link SegmentedTorus}.
+     * @param capacity the capacity, a power of 2
+     * @throws IllegalArgumentException if capacity is not a power of 2
+     * @throws IllegalStateException if logging already started
+     */
+    public static synchronized void setCapacity(int capacity){
+        if (capacity <= 0 || (capacity & -capacity) != capacity)
+            throw new IllegalArgumentException("capacity must be a power of 2. Given "+capacity);
+        if (started)
+            throw new IllegalStateException("the queue's capacity can only be set before the first log");
+        LogManager.capacity = capacity;
+    }
+
+    /**
+     * Sets the minimum level of the events to log. Checked by producers before anything is queued.
+     * Default is {@link Level#DEBUG}.
+     * @param level the minimum level
+     */
+    public static void setLevel(Level level){
+        threshold = level;
+    }
+
+    /**
+     * @param level a level
+     * @return whether events of this level are logged
+     */
+    public static boolean isEnabled(Level level){
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    /**
+     * Producer-side. Before logging started, the startup configuration may still change the level, see
+     * {@link #start()}: the event is then worth queuing anyway.
+     * @param level a level
+     * @return whether an event of this level may be logged, so that its arguments are worth packing
+     */
+    static boolean isQueued(Level level){
+        return !started || isEnabled(level);
+    }
+
+    /**
+     * Sets the minimum level of the events written to the log file. Events below it are still logged and handed
+     * to the appenders, e.g. to a {@link FlightRecorder} keeping DEBUG events in memory without writing them.
+     * Default is {@link Level#DEBUG}.
+     * @param level the minimum level
+     */
+    public static void setFileLevel(Level level){
+        fileThreshold = level;
+    }
+
+    /**
+     * @param level a level
+     * @return whether events of this level are written to the log file, once logged
+     */
+    public static boolean isWritten(Level level){
+        return level.ordinal() >= fileThreshold.ordinal();
+    }
+
+    /**
+     * Sets how the logging daemon waits when the queue is empty. Can be set anytime. Default is
+     * {@link WaitStrategy#YIELD}.
+     * @param strategy the wait strategy
+     */
+    public static void setWaitStrategy(WaitStrategy strategy){
+        waitStrategy = strategy;
+    }
+
+    /**
+     * Replaces the appenders fed by the daemon besides the log file. Can be set anytime.
+     * Once logging started, the swap is done by the daemon: events queued before this call go to the previous
+     * appenders, the following ones to the new ones. Removed appenders are then closed.
+     * @param appenders the new appenders
+     */
+    public static synchronized void setAppenders(Appender... appenders){
+        Appender[] next = appenders.clone();
+        if (started)
+            submit(() -> swapAppenders(next));
+        else
+            LogManager.appenders = next;
+    }
+
+    /**
+     * Sets whether flushing the log file, see {@link #flush()}, also forces it to the storage device, so that
+     * flushed events survive a system crash and not only a crash of the process. Default is false.
+     * Applies to the log file opened next: at the first log call, or by {@link #build(Path, String)}.
+     * @param force whether flushing forces the log file
+     */
+    public static void setForceOnFlush(boolean force){
+        forceOnFlush = force;
+    }
+
+    /**
+     * Enables the sidecar index of the log file, <code>&lt;log file&gt;.idx</code>, which {@link LogIndexReader}
+     * uses to jump straight to a time range or to the events of some levels, instead of scanning the whole log.
+     * The index holds, every <code>eventsPerBlock</code> events or so, the offset of the block in the log, its time
+     * range and its levels, plus the time and level of each event. Events are indexed once their block is full,
+     * or on {@link #flush()}.
+     * Applies to the log file opened next: at the first log call, or by {@link #build(Path, String)}.
+     * @param eventsPerBlock the number of events per block: fewer means finer skipping but a bigger index
+     * @throws IllegalArgumentException if eventsPerBlock is not positive
+     */
+    public static void enableIndex(int eventsPerBlock){
+        if (eventsPerBlock <= 0)
+            throw new IllegalArgumentException("eventsPerBlock must be positive. Given "+eventsPerBlock);
+        indexBlock = eventsPerBlock;
+    }
+
+    /**
+     * Sets how long the shutdown hook waits for the daemon to write what's still queued, see
+     * {@link #shutdown(long, TimeUnit)}. Default is 5 seconds.
+     * @param millis the timeout in milliseconds
+     * @throws IllegalArgumentException if millis is negative
+     */
+    public static void setShutdownTimeout(long millis){
+        if (millis < 0)
+            throw new IllegalArgumentException("timeout must be positive. Given "+millis);
+        shutdownTimeout = millis;
+    }
+
+    /**
+     * Returns a future completed once every event queued before this call has been written to the log file
+     * and handed to the appenders, then the file flushed, and forced if {@link #setForceOnFlush(boolean)
+     * configured}. Completes exceptionally if flushing fails.
+     * <p>
+     * The flush is queued like an event, so it doesn't wait for events queued after it. Events sent to a
+     * shared ring are the collector's business, they aren't covered.
+     * @return the flush barrier
+     */
+    public static CompletableFuture<Void> flush(){
+        return flush(null);
+    }
+
+    /**
+     * Same as {@link #flush()}, running a task on the daemon right before flushing, unless the log file is closed.
+     * Lets appenders act in order with the events, see {@link FlightRecorder#dump()}.
+     * @param task the task, may be null
+     * @return the flush barrier
+     */
+    static CompletableFuture<Void> flush(Runnable task){
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (started)
+            submit(() -> flush(done, task));
+        else
+            done.complete(null);    // nothing was ever logged
+        return done;
+    }
+
+    /**
+     * Writes every event queued before this call, closes the appenders and the log file, waiting at most the
+     * given time. Events logged afterwards are discarded. Called by the shutdown hook, see
+     * {@link #setShutdownTimeout(long)}.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of timeout
+     * @return whether everything was written in time. If not, the daemon keeps going in the background,
+     * and the log file is closed once it's done, if the JVM is still there.
+     */
+    public static boolean shutdown(long timeout, TimeUnit unit){
+        if (!started)
+            return true;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        submit(() -> close(done));
+        try {
+            done.get(timeout, unit);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();     // written, only closing failed
+        }
+        return true;
+    }
+
+    /**
+     * Applies the given configuration file. See {@link #configure(Properties)}.
+     * @param propertiesFile the properties file
+     * @throws IllegalStateException if a <code>IOException</code> occurs
+     */
+    public static void configure(Path propertiesFile){
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(propertiesFile, StandardCharsets.UTF_8)){
+            properties.load(reader);
+        } catch (IOException exception){
+            throw new IllegalStateException(exception);
+        }
+        configure(properties);
+    }
+
+    /**
+     * Applies the given configuration. Missing keys leave the current setting untouched.
+     * <ul>
+     *     <li><code>xenon.log.directory</code>, <code>xenon.log.file</code>: see {@link #build(Path, String)}</li>
+     *     <li><code>xenon.log.capacity</code>: see {@link #setCapacity(int)}, ignored once logging started</li>
+     *     <li><code>xenon.log.level</code>: see {@link #setLevel(Level)}</li>
+     *     <li><code>xenon.log.file.level</code>: see {@link #setFileLevel(Level)}</li>
+     *     <li><code>xenon.log.pattern</code>: see {@link #setPattern(String)}</li>
+     *     <li><code>xenon.log.coalescing</code>: see {@link #setCoalescing(boolean)}</li>
+     *     <li><code>xenon.log.wait</code>: see {@link #setWaitStrategy(WaitStrategy)}</li>
+     *     <li><code>xenon.log.force</code>: see {@link #setForceOnFlush(boolean)}</li>
+     *     <li><code>xenon.log.index</code>: events per block, see {@link #enableIndex(int)}</li>
+     *     <li><code>xenon.log.shutdown.timeout</code>: in milliseconds, see {@link #setShutdownTimeout(long)}</li>
+     *     <li><code>xenon.log.formatters</code>: see {@link #startFormatters(int)}, ignored if already started</li>
+     *     <li><code>xenon.log.appenders</code>: comma-separated class names of {@link Appender}s with a public
+     *     no-arg constructor, see {@link #setAppenders(Appender...)}</li>
+     * </ul>
+     * @param properties the configuration
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    public static synchronized void configure(Properties properties){
+        String v;
+        if ((v = properties.getProperty("xenon.log.capacity")) != null && !started)
+            setCapacity(Integer.parseInt(v.trim()));
+        if ((v = properties.getProperty("xenon.log.level")) != null)
+            setLevel(Level.valueOf(v.trim().toUpperCase()));
+        if ((v = properties.getProperty("xenon.log.file.level")) != null)
+            setFileLevel(Level.valueOf(v.trim().toUpperCase()));
+        if ((v = properties.getProperty("xenon.log.pattern")) != null)
+            setPattern(v);
+        if ((v = properties.getProperty("xenon.log.coalescing")) != null)
+            setCoalescing(Boolean.parseBoolean(v.trim()));
+        if ((v = properties.getProperty("xenon.log.wait")) != null)
+            setWaitStrategy(WaitStrategy.valueOf(v.trim().toUpperCase()));
+        if ((v = properties.getProperty("xenon.log.force")) != null)
+            setForceOnFlush(Boolean.parseBoolean(v.trim()));
+        if ((v = properties.getProperty("xenon.log.index")) != null)
+            enableIndex(Integer.parseInt(v.trim()));
+        if ((v = properties.getProperty("xenon.log.shutdown.timeout")) != null)
+            setShutdownTimeout(Long.parseLong(v.trim()));
+        if ((v = properties.getProperty("xenon.log.formatters")) != null && pipeline == null)
+            startFormatters(Integer.parseInt(v.trim()));
+
+        String directory = properties.getProperty("xenon.log.directory"), file = properties.getProperty("xenon.log.file");
+        if (directory != null || file != null)
+            build(directory == null ? logDirectory : Paths.get(directory), file == null ? logFileName : file);
+
+        if ((v = properties.getProperty("xenon.log.appenders")) != null){
+            List<Appender> list = new ArrayList<>();
+            for (String name : v.split(","))
+                if (!name.isBlank())
+                    list.add(instantiate(name.trim()));
+            setAppenders(list.toArray(new Appender[0]));
+        }
+    }
+
+    private static Appender instantiate(String className){
+        try {
+            return (Appender) Class.forName(className).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("can't instantiate appender " + className, e);
+        }
+    }
+
+    /**
+     * Hands a task to the logging daemon, which runs it once every event queued before has been handled,
+     * and before any event queued after. Logging must have started.
+     * @param task the task
+     */
+    private static void submit(Runnable task){
+        ringBuffer.add(new Task(task));
+    }
+
+    /**
+     * A task for the daemon, queued among log events so that it runs exactly in between.
+     */
+    private static final class Task extends LogEvent{
+        final Runnable action;
+
+        Task(Runnable action){
+            this.action = action;
+        }
+    }
+
+    /**
+     * Daemon-side. Switches to the new log file, once everything in flight was written to the previous one.
+     */
+    private static void swapWriter(UnsafeBufferedWriter writer, LogIndex idx){
+        UnsafeBufferedWriter old = writer;
+        LogIndex oldIndex = idx;
+        if (!closed){
+            FormattingPipeline p = pipeline;
+            if (p != null)
+                p.awaitWritten();
+            old = bufferedWriter;
+            oldIndex = index;
+            bufferedWriter = writer;
+            index = idx;
+        }
+        try {
+            old.realClose();
+            if (oldIndex != null)
+                oldIndex.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Daemon-side. Flushes what was written so far, see {@link #flush()}.
+     */
+    private static void flush(CompletableFuture<Void> done, Runnable task){
+        if (closed){
+            done.complete(null);
+            return;
+        }
+        try {
+            if (task != null)
+                task.run();
+            endOfBatch();
+            FormattingPipeline p = pipeline;
+            if (p != null)
+                p.awaitWritten();
+            bufferedWriter.flush();
+            LogIndex idx = index;
+            if (idx != null)
+                idx.flush();
+            done.complete(null);
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Daemon-side. Closes the appenders and the log file, see {@link #shutdown(long, TimeUnit)}.
+     */
+    private static void close(CompletableFuture<Void> done){
+        if (closed){
+            done.complete(null);
+            return;
+        }
+        closed = true;
+        try {
+            FormattingPipeline p = pipeline;
+            if (p != null)
+                p.awaitWritten();
+            for (Appender a : appenders)
+                a.close();
+            bufferedWriter.realClose();
+            LogIndex idx = index;
+            if (idx != null)
+                idx.close();
+            done.complete(null);
+        } catch (IOException | RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Daemon-side. Switches to the new appenders and closes the ones removed.
+     */
+    private static void swapAppenders(Appender[] next){
+        Appender[] old = appenders;
+        appenders = next;
+        outer:
+        for (Appender a : old){
+            for (Appender n : next)
+                if (n == a)
+                    continue outer;
+            a.close();
+        }
+    }
+
+    /**
+     * Sends every following log event to the shared ring buffer mapped from the given file, instead of this JVM's
+     * own log file. Producers serialize their events straight into the ring, so the logging daemon has nothing
+     * left to do: a single {@link LogCollector} process drains the ring of every JVM of the host into one file.
+     * When the ring is full, events are dropped rather than blocking the producer, and counted, see
+     * {@link #sharedDropped()}. Events bigger than a record, see {@link RecordTorus#maxLength()}, are truncated.
+     * @param ringFile the ring file, shared by every process logging to the same collector
+     * @param capacity the capacity in bytes of the ring, see {@link FilesUtils#mapRecordTorus(Path, int)}
+     * @throws IllegalStateException if a <code>IOException</code> occurs
+     * @see LogCollector
+     */
+    public static void share(Path ringFile, int capacity){
+        try{
+            sharedRing = FilesUtils.mapRecordTorus(ringFile, capacity);
+        }catch(IOException exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * @return the number of events this process dropped so far because the shared ring stayed full, see
+     * {@link #share(Path, int)}
+     */
+    public static long sharedDropped(){
+        return sharedDropped.get();
+    }
+
+    /**
+     * Enables the spill mode. When more than <code>watermark</code> events are waiting in the queue,
+     * the logging daemon stops formatting them and appends them raw to a memory-mapped spill file instead,
+     * then replays them in order, by batches, as the log file catches up.
+     * Memory stays bounded and no event is lost, without ever blocking producers.
+     * Caller locations are not kept by the spill.
+     * @param spillFile the spill file, a scratch file reset once everything is replayed
+     * @param capacity the size in bytes of the spill file
+     * @param watermark the number of waiting events above which the daemon spills
+     * @throws IllegalStateException if a <code>IOException</code> occurs
+     */
+    public static void enableSpill(Path spillFile, int capacity, int watermark){
+        try{
+            spillWatermark = watermark;
+            spill = new LogSpill(spillFile, capacity);
+        }catch(IOException exception){
+            throw new IllegalStateException(exception);
+        }
+    }
+
     /**
      * The logging background thread.
      */
@@ -63,10 +572,10 @@ public class LogManager {
             super(name);
             this.setDaemon(true);
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                try {
-                    bufferedWriter.realClose(); // avoid shutting down daemon whilst doing IO, leaving the writer open.
-                } catch (IOException ignored) {}    // IOException means we failed to flush the buffer.
-                // doesn't matter as long as the writer can get closed
+                markInternalThread();
+                // the daemon closes the writer itself once drained, never whilst doing IO
+                if (!shutdown(shutdownTimeout, TimeUnit.MILLISECONDS))
+                    System.err.println("logs not fully written after " + shutdownTimeout + " ms, giving up");
             }));
             this.start();
         }
@@ -74,27 +583,139 @@ public class LogManager {
         @SuppressWarnings("InfiniteLoopStatement")
         @Override
         public void run() {
+            markInternalThread();
             while (true) {
-                ringBuffer.consumeAll(LogManager::append);
+                drain();
 
-                while(ringBuffer.isEmpty())
-                    Thread.yield();
+                LogSpill s = spill;
+                while(priorityLane.isEmpty() && ringBuffer.isEmpty() && (s == null || s.isEmpty()))
+                    waitStrategy.idle();
             }
         }
+
+        /**
+         * Handles every event in the queue, checking the priority lane regularly.
+         */
+        private static void drain(){
+            drainPriority();
+            LogSpill s = spill;
+            if (s == null || (s.isEmpty() && ringBuffer.size() <= spillWatermark)){
+                int n = 0;
+                for (LogEvent e = ringBuffer.consume(); e != null; e = ringBuffer.consume()){
+                    append(e);
+                    if ((++n & (PRIORITY_CHECK - 1)) == 0)
+                        drainPriority();
+                }
+            } else
+                drainThroughSpill(s);
+            endRun();   // a run never outlives the batch it was detected in
+
+            FormattingPipeline p = pipeline;
+            if (p != null)
+                p.dispatch();
+            endOfBatch();
+        }
+
+        /**
+         * The appender is lagging: queued events go to the spill, and only a batch is replayed from it,
+         * so that the queue gets drained even if the appender is slow. Once the spill holds something,
+         * every event goes through it, to keep the order.
+         */
+        private static void drainThroughSpill(LogSpill s){
+            int n = 0;
+            for (LogEvent e = ringBuffer.consume(); e != null; e = ringBuffer.consume()){
+                if (e instanceof Task || !s.write(e)){  // tasks can't be spilled, and a full spill has to wait
+                    s.replay(LogManager::append, Integer.MAX_VALUE);
+                    append(e);
+                }
+                if ((++n & (PRIORITY_CHECK - 1)) == 0)
+                    drainPriority();
+            }
+            s.replay(LogManager::append, REPLAY_BATCH);
+        }
     }
 
-    private static UnsafeBufferedWriter bufferedWriter;
+    private static volatile UnsafeBufferedWriter bufferedWriter;
+
+    /**
+     * Index of the log file, if {@link #enableIndex(int)} was called. Swapped along with the writer.
+     */
+    private static volatile LogIndex index;
+    private static volatile int indexBlock;
+
+    /**
+     * Appenders fed besides the log file. Only written by the daemon once logging started.
+     */
+    private static Appender[] appenders = new Appender[0];
+
+    /**
+     * Set by the daemon once the log file is closed, see {@link #shutdown(long, TimeUnit)}.
+     */
+    private static boolean closed;
+
+    private static volatile boolean forceOnFlush;
+    private static volatile long shutdownTimeout = 5000;
+    private static volatile Level threshold = Level.DEBUG;
+    private static volatile Level fileThreshold = Level.DEBUG;
+    private static volatile WaitStrategy waitStrategy = WaitStrategy.YIELD;
+
+    /**
+     * Spill file of the daemon, if {@link #enableSpill(Path, int, int)} was called.
+     */
+    private static volatile LogSpill spill;
+    private static volatile int spillWatermark;
+
+    /**
+     * Number of events replayed from the spill between two checks of the queue.
+     */
+    private static final int REPLAY_BATCH = 256;
+
+    /**
+     * The ring shared with other processes, if {@link #share(Path, int)} was called.
+     */
+    private static volatile RecordTorus sharedRing;
+
+    /**
+     * Tag of the records this process writes to the shared ring, so that the collector can tell processes apart.
+     */
+    private static final int PID = (int) ProcessHandle.current().pid();
+
+    /**
+     * Events dropped because the shared ring stayed full. Incremented by producers, which only contend on it when
+     * dropping.
+     */
+    private static final AtomicLong sharedDropped = new AtomicLong();
 
     /**
-     * Separate thread only used for logging.
+     * Separate thread only used for logging. Started by the first log call.
      */
-    private static final LogBackground loggingThread = new LogBackground("Logging Thread");
+    private static LogBackground loggingThread;
 
     /**
      * Logger singleton
      */
     private static final BlockingLogger instance = new BlockingLogger();
 
+    /**
+     * Set on the threads of the logging system itself, see {@link #isInternalThread()}.
+     */
+    private static final ThreadLocal<Boolean> internalThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Marks the current thread as part of the logging system.
+     */
+    static void markInternalThread(){
+        internalThread.set(true);
+    }
+
+    /**
+     * @return whether the current thread is part of the logging system: the daemon, the formatting pipeline or
+     * the shutdown hook. What these threads print must not be logged back, see {@link LogPrintStream}.
+     */
+    static boolean isInternalThread(){
+        return internalThread.get();
+    }
+
     /**
      * @return the logger instance to log stuff.
      */
@@ -108,58 +729,416 @@ public class LogManager {
     private static final byte MAX_CHARACTERS_PER_LINE = Byte.MAX_VALUE;
 
     /**
-     * DateFormatter to get the time formatted in the logs
+     * Layout of the lines written by the daemon. Default is {@link LogLayout#DEFAULT}.
+     */
+    private static volatile LogLayout layout = LogLayout.DEFAULT;
+
+    /**
+     * The underlying concurrent queue that allows passing log events to the logging daemon.
+     * Formatting is left to the daemon, producers only fill a {@link LogEvent}.
+     * Bursts bigger than the ring spill into recycled segments instead of overwriting events.
+     * Created by {@link #start()}, see {@link #setCapacity(int)}.
+     */
+    private static SegmentedTorus<LogEvent> ringBuffer;
+
+    /**
+     * Lane of {@link Level#ERROR} and {@link Level#FATAL} events, see {@link #drainPriority()}.
+     */
+    private static SegmentedTorus<LogEvent> priorityLane;
+    private static final int PRIORITY_CAPACITY = 16;
+    /**
+     * Number of events the daemon handles from the main queue between two checks of the priority lane, a power of 2.
+     */
+    private static final int PRIORITY_CHECK = 1 << 6;
+
+    /**
+     * Max time span, in milliseconds, of a run of identical events collapsed into a single "repeated" record.
+     * Past it, the run is reported and a new one starts, so that a long flood still shows up regularly in the file.
+     */
+    private static final long COALESCING_WINDOW = 1000;
+
+    /**
+     * Whether the daemon collapses runs of identical consecutive events. Default is true.
+     */
+    private static volatile boolean coalescing = true;
+
+    /*
+     * Consumer-side state of the current run. Only ever touched by the logging daemon.
+     * Fields are copied rather than keeping the event itself, as events may get re-used once consumed.
      */
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static Level runLevel;
+    private static String runMsg, runThreadName;
+    private static CallerLocation runLocation;
+    private static long runStart, runEnd;
+    private static int repeats;
+    private static final LogEvent summary = new LogEvent();
+    private static final StringBuilder lineBuilder = new StringBuilder(), wrappedBuilder = new StringBuilder();
 
     /**
-     * The underlying concurrent String queue that allows passing logs to the logging daemon.
+     * Formatters and writer threads, if {@link #startFormatters(int)} was called.
      */
-    public static final BlockingTorus<String> ringBuffer = BlockingTorus.build(16);
+    private static volatile FormattingPipeline pipeline;
 
     /**
-     * Formats the text correctly for logging and queue it to the log queue.
+     * Sets the pattern of the lines written to the log file. Can be set anytime.
+     * Caller location (<code>%C</code>, <code>%M</code>, <code>%L</code>) is opt-in: producers only capture it
+     * while the pattern asks for it.
+     * @param pattern the new pattern
+     * @throws IllegalArgumentException if the pattern contains an unknown conversion
+     * @see LogLayout
+     */
+    public static void setPattern(String pattern){
+        layout = new LogLayout(pattern);
+    }
+
+    /**
+     * Moves formatting off the logging daemon, onto the given number of formatter threads, plus one writer thread.
+     * The daemon then only drains the queue into numbered batches. Formatters format batches in parallel,
+     * and the writer appends them to the file strictly in order. Can only be called once.
+     * @param formatters the number of formatter threads
+     * @throws IllegalArgumentException if formatters is not positive
+     * @throws IllegalStateException if formatters were already started
+     * @see FormattingPipeline
+     */
+    public static synchronized void startFormatters(int formatters){
+        if (pipeline != null)
+            throw new IllegalStateException("formatters already started");
+        pipeline = new FormattingPipeline(formatters);
+    }
+
+    /**
+     * Enables or disables the coalescing of identical consecutive events (same level and same message).
+     * When enabled, the first event of a run is logged normally and the following ones are replaced by a single
+     * "last message repeated N times" record, written once the run ends, the drained batch ends,
+     * or the run spans more than {@link #COALESCING_WINDOW} milliseconds.
+     * @param enabled whether coalescing should be performed
+     */
+    public static void setCoalescing(boolean enabled){
+        coalescing = enabled;
+    }
+
+    /**
+     * Fills a new {@link LogEvent} and queue it to the log queue.
+     * Formatting is done by the logging daemon.
      * @param text the core message of the log
      * @param level the level of severity of the message
      * @see BlockingLogger
      */
     static void queueLog(String text, Level level){
-        String msg = "<"+LocalTime.now().format(formatter)+"> ["+Thread.currentThread().getName()+'/'
-                +level.toString()+"] : "+text;
+        queueLog(text, null, level);
+    }
 
-        ringBuffer.offer(msg);
+    /**
+     * Fills a new {@link LogEvent} with a parameterized message and queue it to the log queue.
+     * The template is formatted by the consumer, see {@link MessageTemplate}, so the arguments should not be
+     * mutated afterwards. Events sent to a shared ring are formatted right away, by the caller.
+     * @param text the template of the message, or the message itself if args is null
+     * @param args the arguments of the template
+     * @param level the level of severity of the message
+     * @see BlockingLogger
+     */
+    static void queueLog(String text, Object[] args, Level level){
+        RecordTorus shared = sharedRing;
+        if (!started && shared == null){
+            if (starting){  // from start() itself, or a thread it waits for: waiting for start() would never end
+                startupEvents.add(event(text, args, level));
+                if (started)
+                    queueStartupEvents();
+                return;
+            }
+            start();    // before the level check, as the startup configuration may change the level
+        }
+        if (!isEnabled(level))
+            return;
+
+        if (shared != null){
+            queueShared(shared, args == null ? text : MessageTemplate.of(text).format(args, new StringBuilder())
+                    .toString(), level);
+            return;
+        }
+        queue(event(text, args, level));
     }
 
+    private static LogEvent event(String text, Object[] args, Level level){
+        LogEvent event = new LogEvent();
+        event.construct(System.currentTimeMillis(), Thread.currentThread().getName(), text, args, null, level,
+                layout.needsLocation() ? CallerLocation.locate() : null);
+        return event;
+    }
+
+    private static void queue(LogEvent event){
+        (event.lvl.ordinal() >= Level.ERROR.ordinal() ? priorityLane : ringBuffer).add(event);
+    }
+
+    /**
+     * Consumer-side. Handles the events of the priority lane, then flushes the log file right away.
+     * They overtake the events waiting in the main queue, which is why the daemon checks this lane first
+     * and regularly while draining the main queue.
+     */
+    private static void drainPriority(){
+        if (priorityLane.isEmpty())
+            return;
+        endRun();
+        for (LogEvent e = priorityLane.consume(); e != null; e = priorityLane.consume())
+            append(e);
+        endRun();
+        if (closed)
+            return;
+
+        FormattingPipeline p = pipeline;
+        if (p != null)
+            p.awaitWritten();
+        endOfBatch();
+        try {
+            bufferedWriter.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
     /**
-     * Core method to append a line at the end of the logs file.
-     * @param line the line to log
+     * Serializes the event in the shared ring, retrying a few times if it's full.
+     * Events bigger than a record can be are truncated, a log call mustn't fail for a long message.
      */
-    private static void append(String line) {
-        int stopIndex = line.length() - 1;
+    private static void queueShared(RecordTorus shared, String text, Level level){
+        String threadName = Thread.currentThread().getName();
+        int length = LogEventCodec.encodedLength(threadName, text, null);
+        if (length > shared.maxLength()){
+            threadName = truncate(threadName, (shared.maxLength() >> 2) - 8);
+            int room = (shared.maxLength() - LogEventCodec.encodedLength(threadName, "", null)) >> 1;   // in chars
+            text = truncate(text, room);
+            length = LogEventCodec.encodedLength(threadName, text, null);
+            if (length > shared.maxLength()){
+                sharedDropped.incrementAndGet();    // a ring too small for any event, dropped like when it's full
+                return;
+            }
+        }
+        int offset = shared.claim(length, PID);
+        for (int i = 0; offset < 0 && i < SHARED_RETRIES; i++){
+            Thread.onSpinWait();
+            offset = shared.claim(length, PID);
+        }
+        if (offset < 0){
+            sharedDropped.incrementAndGet();    // the collector is lagging behind
+            return;
+        }
+
+        LogEventCodec.encode(shared.buffer(), offset, System.currentTimeMillis(), threadName, text, null, level);
+        shared.commit(offset);
+    }
+
+    private static final int SHARED_RETRIES = 1 << 8;
 
-        int lineCount = 1 + stopIndex / MAX_CHARACTERS_PER_LINE;
+    /**
+     * @return the string cut to at most the given number of chars, without splitting a surrogate pair
+     */
+    private static String truncate(String s, int chars){
+        if (s.length() <= chars)
+            return s;
+        if (chars > 0 && Character.isHighSurrogate(s.charAt(chars - 1)))
+            chars--;
+        return s.substring(0, Math.max(chars, 0));
+    }
 
-        StringBuilder builder = new StringBuilder();
+    /**
+     * Consumer-side. Logs the event unless it repeats the previous one, in which case it only gets counted.
+     * @param event the event to log
+     */
+    private static void append(LogEvent event) {
+        if (event instanceof Task){
+            drainPriority();    // priority events queued before the task may still be in their lane
+            endRun();
+            ((Task) event).action.run();
+            return;
+        }
+        if (closed)
+            return;     // logged after shutdown
+        if (coalescing && event.throwable == null && event.args == null && event.lvl == runLevel && event.location == runLocation
+                && event.time - runStart <= COALESCING_WINDOW && event.msg.equals(runMsg)){
+            repeats++;
+            runEnd = event.time;
+            return;
+        }
+
+        endRun();
+        write(event);
+
+        if (event.throwable == null && event.args == null){   // throwables and arguments are never collapsed
+            runLevel = event.lvl;
+            runMsg = event.msg;
+            runThreadName = event.threadName;
+            runLocation = event.location;
+            runStart = runEnd = event.time;
+        }
+    }
+
+    /**
+     * Consumer-side. Ends the current run, writing the "repeated" record if the run collapsed any event.
+     */
+    private static void endRun(){
+        if (repeats > 0){
+            summary.construct(runEnd, runThreadName, "last message repeated " + repeats + " times", null, runLevel,
+                    runLocation);
+            write(summary);
+        }
+
+        repeats = 0;
+        runLevel = null;
+        runMsg = runThreadName = null;
+        runLocation = null;
+    }
+
+    /**
+     * Consumer-side. Tells the appenders the daemon is done with the events queued so far.
+     */
+    private static void endOfBatch(){
+        for (Appender a : appenders){
+            try {
+                a.endOfBatch();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-        try(UnsafeBufferedWriter bw = bufferedWriter){
-            for (int i=0; i < lineCount; i++) {
-                int startLine = i * MAX_CHARACTERS_PER_LINE;
-                if (i > 0)
-                    builder.append("\t");
+    /**
+     * Formats the event with the current layout and appends it to the logs file if its level is written,
+     * then hands it to the appenders.
+     * @param event the event to log
+     */
+    private static void write(LogEvent event){
+        if (isWritten(event.lvl))
+            writeToFile(event);
 
-                builder.append(line,
-                        startLine,
-                        Math.min(stopIndex + 1, startLine + MAX_CHARACTERS_PER_LINE)).append("\n");
-                bw.write(builder.toString());
-                builder.setLength(0);   // reset builder to not create a new instance every loop turn
+        for (Appender a : appenders){
+            try {
+                a.append(event);
+            } catch (RuntimeException e) {  // a faulty appender mustn't kill the daemon
+                e.printStackTrace();
             }
+        }
+    }
+
+    /**
+     * Consumer-side. Formats the event with the current layout and appends it to the logs file, whatever its level.
+     * Also used by appenders writing events back to the file, see {@link FlightRecorder}.
+     * @param event the event, which may be re-used once this method returns
+     */
+    static void writeToFile(LogEvent event){
+        FormattingPipeline p = pipeline;
+        if (p != null)
+            p.add(event);
+        else {
+            emit(format(event, lineBuilder, wrappedBuilder));
+            index(event, wrappedBuilder, 0, wrappedBuilder.length());
+            wrappedBuilder.setLength(0);
+        }
+    }
+
+    /**
+     * Formats the event with the current layout, as it will appear in the logs file:
+     * lines longer than {@link #MAX_CHARACTERS_PER_LINE} are wrapped, never in between a surrogate pair, each line
+     * ends with a line feed.
+     * @param event the event to format
+     * @param line scratch builder, reset by this method
+     * @param out the builder the formatted text is appended to
+     * @return out
+     */
+    static StringBuilder format(LogEvent event, StringBuilder line, StringBuilder out){
+        line.setLength(0);
+        layout.format(event, line);
+
+        final int length = line.length();
+        int start = 0;
+        do {
+            int end = Math.min(length, start + MAX_CHARACTERS_PER_LINE);
+            if (end < length && Character.isHighSurrogate(line.charAt(end - 1)))
+                end--;      // a split surrogate pair can't be encoded
+            if (start > 0)
+                out.append('\t');
+            out.append(line, start, end).append('\n');
+            start = end;
+        } while (start < length);
+        return out;
+    }
+
+
+    /**
+     * Core method to append formatted text at the end of the logs file.
+     * Only ever called by a single thread: the daemon, or the writer of the {@link FormattingPipeline}.
+     * @param text the formatted text, see {@link #format(LogEvent, StringBuilder, StringBuilder)}
+     */
+    static void emit(StringBuilder text) {
+        try{
+            bufferedWriter.append(text);    // copied straight into the buffer
         }catch(IOException e) {
             e.printStackTrace();
             System.out.println("failed to log into file");
         }
     }
 
+    /**
+     * Adds an event just emitted to the index of the log file, if any.
+     * Only ever called by the thread calling {@link #emit(StringBuilder)}.
+     * @param event the event
+     * @param text the emitted text
+     * @param start the start of the event's text, inclusive
+     * @param end the end of the event's text, exclusive
+     */
+    static void index(LogEvent event, CharSequence text, int start, int end){
+        LogIndex idx = index;
+        if (idx == null)
+            return;
+        try {
+            idx.event(event.time, event.lvl, LogIndex.utf8Length(text, start, end));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * How the logging daemon waits for events when the queue is empty.
+     * @author Zenon
+     */
+    public enum WaitStrategy{
+        /**
+         * Busy-spins. Lowest latency, burns a core.
+         */
+        SPIN{
+            @Override
+            void idle() {
+                Thread.onSpinWait();
+            }
+        },
+        /**
+         * Yields its time slice. Low latency, burns a core when nothing else runs.
+         */
+        YIELD{
+            @Override
+            void idle() {
+                Thread.yield();
+            }
+        },
+        /**
+         * Sleeps 100 microseconds. Latency of the same order, barely uses the CPU.
+         */
+        PARK{
+            @Override
+            void idle() {
+                LockSupport.parkNanos(100_000);
+            }
+        };
+
+        abstract void idle();
+    }
+
+    /**
+     * Idles once with the current {@link WaitStrategy}, for the threads of the logging system waiting for work.
+     */
+    static void idle(){
+        waitStrategy.idle();
+    }
+
     /**
      * Different levels of severity concerning logging.
      * @author Zenon
@@ -0,0 +1,377 @@
+package com.xenon.logging;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A {@link PrintStream} sending every line printed to it to the logging queue, so that code still printing to
+ * {@link System#out} or {@link System#err} no longer blocks on the console. See {@link #install(LogManager.Level,
+ * LogManager.Level)}.
+ * <p>
+ * Each thread fills its own line, so lines of different threads don't mix and no lock is taken. A line is logged
+ * once its line feed is printed, without the line feed (a trailing carriage return is dropped too), and the thread's
+ * buffer is then released, so that threads of a pool which printed once, or printed a huge line, don't keep it.
+ * <p>
+ * Each line is an event of its own: a stack trace printed to {@link System#err} is one event per frame. Hence the
+ * WARN default for {@link System#err}, as ERROR events overtake the others, see {@link LogManager}, and would
+ * interleave frames with what was logged before them.
+ * <p>
+ * What the logging system itself prints (the daemon, the formatting pipeline, an appender writing to the
+ * console...) goes to the original stream instead, as does anything printed while a line is being logged, so
+ * that logging never recurses.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class LogPrintStream extends PrintStream {
+
+    private static PrintStream originalOut, originalErr;
+
+    private final PrintStream fallback;
+    private final LogManager.Level level;
+    private final Charset charset = Charset.defaultCharset();
+    private final ThreadLocal<Line> lines = ThreadLocal.withInitial(Line::new);
+
+    private static LogPrintStream installedOut, installedErr;
+
+    /**
+     * Replaces {@link System#out} and {@link System#err} with streams logging at {@link LogManager.Level#INFO}
+     * and {@link LogManager.Level#WARN}.
+     */
+    public static void install(){
+        install(LogManager.Level.INFO, LogManager.Level.WARN);
+    }
+
+    /**
+     * Replaces {@link System#out} and {@link System#err} with streams logging at the given levels.
+     * The original streams are kept for the logging system's own output, and put back by {@link #uninstall()}.
+     * @param outLevel the level of the lines printed to {@link System#out}
+     * @param errLevel the level of the lines printed to {@link System#err}, better below ERROR, see above
+     */
+    public static synchronized void install(LogManager.Level outLevel, LogManager.Level errLevel){
+        if (originalOut == null){
+            originalOut = System.out;
+            originalErr = System.err;
+        }
+        System.setOut(installedOut = new LogPrintStream(originalOut, outLevel));
+        System.setErr(installedErr = new LogPrintStream(originalErr, errLevel));
+    }
+
+    /**
+     * Puts back the original {@link System#out} and {@link System#err}. Partial lines not ended yet are lost:
+     * the calling thread's are released right away, other threads' when they end or when the threads die.
+     */
+    public static synchronized void uninstall(){
+        if (originalOut == null)
+            return;
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        installedOut.lines.remove();
+        installedErr.lines.remove();
+        originalOut = originalErr = null;
+        installedOut = installedErr = null;
+    }
+
+    /**
+     * Creates a stream logging each line at the given level.
+     * @param fallback the stream written to when logging would recurse
+     * @param level the level of the lines
+     */
+    public LogPrintStream(PrintStream fallback, LogManager.Level level){
+        super(fallback, true);
+        this.fallback = fallback;
+        this.level = level;
+    }
+
+    /**
+     * @return the line of the current thread, or null if its output goes to the fallback stream
+     */
+    private Line line(){
+        Line l = lines.get();
+        return l.internal || l.busy ? null : l;
+    }
+
+    private void text(CharSequence s){
+        Line l = line();
+        if (l == null){
+            fallback.print(s);
+            return;
+        }
+        l.decodeBytes(charset);
+        final int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length; i++){
+            if (s.charAt(i) == '\n'){
+                l.chars.append(s, start, i);
+                end(l);
+                l = lines.get();
+                start = i + 1;
+            }
+        }
+        l.chars.append(s, start, length);
+    }
+
+    private void textln(CharSequence s){
+        Line l = line();
+        if (l == null){
+            fallback.println(s);
+            return;
+        }
+        text(s);
+        end(lines.get());   // text may have ended l
+    }
+
+    /**
+     * Logs the line of the current thread, and releases it: the next text goes to a new one.
+     */
+    private void end(Line l){
+        l.decodeBytes(charset);
+        StringBuilder b = l.chars;
+        int length = b.length();
+        if (length > 0 && b.charAt(length - 1) == '\r')
+            length--;
+        String text = b.substring(0, length);
+        b.setLength(0);
+
+        l.busy = true;
+        try {
+            LogManager.getLogger().log(text, level);
+        } finally {
+            l.busy = false;
+            lines.remove();     // only once logged, so that what logging prints still finds l busy
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        Line l = line();
+        if (l == null)
+            fallback.write(b);
+        else if (b == '\n')
+            end(l);
+        else
+            l.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        Line l = line();
+        if (l == null){
+            fallback.write(buf, off, len);
+            return;
+        }
+        for (int i = off, end = off + len; i < end; i++){
+            if (buf[i] == '\n'){
+                end(l);
+                l = lines.get();
+            } else
+                l.put(buf[i]);
+        }
+    }
+
+    @Override
+    public void print(boolean b) {
+        text(b ? "true" : "false");
+    }
+
+    @Override
+    public void print(char c) {
+        Line l = line();
+        if (l == null)
+            fallback.print(c);
+        else if (c == '\n')
+            end(l);
+        else {
+            l.decodeBytes(charset);
+            l.chars.append(c);
+        }
+    }
+
+    @Override
+    public void print(int i) {
+        Line l = line();
+        if (l == null)
+            fallback.print(i);
+        else {
+            l.decodeBytes(charset);
+            l.chars.append(i);
+        }
+    }
+
+    @Override
+    public void print(long v) {
+        Line l = line();
+        if (l == null)
+            fallback.print(v);
+        else {
+            l.decodeBytes(charset);
+            l.chars.append(v);
+        }
+    }
+
+    @Override
+    public void print(float f) {
+        Line l = line();
+        if (l == null)
+            fallback.print(f);
+        else {
+            l.decodeBytes(charset);
+            l.chars.append(f);
+        }
+    }
+
+    @Override
+    public void print(double d) {
+        Line l = line();
+        if (l == null)
+            fallback.print(d);
+        else {
+            l.decodeBytes(charset);
+            l.chars.append(d);
+        }
+    }
+
+    @Override
+    public void print(char[] s) {
+        text(new String(s));
+    }
+
+    @Override
+    public void print(String s) {
+        text(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        text(String.valueOf(obj));
+    }
+
+    @Override
+    public void println() {
+        Line l = line();
+        if (l == null)
+            fallback.println();
+        else
+            end(l);
+    }
+
+    @Override
+    public void println(boolean x) {
+        textln(x ? "true" : "false");
+    }
+
+    @Override
+    public void println(char x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(int x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(long x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(float x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(double x) {
+        print(x);
+        println();
+    }
+
+    @Override
+    public void println(char[] x) {
+        textln(new String(x));
+    }
+
+    @Override
+    public void println(String x) {
+        textln(String.valueOf(x));
+    }
+
+    @Override
+    public void println(Object x) {
+        textln(String.valueOf(x));
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq) {
+        text(csq == null ? "null" : csq);
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+        text((csq == null ? "null" : csq).subSequence(start, end));
+        return this;
+    }
+
+    @Override
+    public PrintStream append(char c) {
+        print(c);
+        return this;
+    }
+
+    /**
+     * Partial lines are kept until their line feed, only the fallback stream is flushed.
+     */
+    @Override
+    public void flush() {
+        fallback.flush();
+    }
+
+    /**
+     * Does nothing, the fallback stream is left open.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean checkError() {
+        return fallback.checkError();
+    }
+
+    /**
+     * The line being printed by a thread.
+     */
+    private static final class Line {
+        final StringBuilder chars = new StringBuilder();
+        /**
+         * raw bytes written since the last text, decoded once the line ends or text is printed
+         */
+        byte[] bytes;
+        int nBytes;
+        final boolean internal = LogManager.isInternalThread();
+        /**
+         * whether the line is being logged, see {@link #end(Line)}
+         */
+        boolean busy;
+
+        void put(byte b){
+            if (bytes == null)
+                bytes = new byte[64];
+            else if (nBytes == bytes.length)
+                bytes = Arrays.copyOf(bytes, nBytes << 1);
+            bytes[nBytes++] = b;
+        }
+
+        void decodeBytes(Charset charset){
+            if (nBytes == 0)
+                return;
+            chars.append(new String(bytes, 0, nBytes, charset));
+            nBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.xenon.logging;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Sequential, memory-mapped FIFO of raw {@link LogEvent}s, used by the logging daemon as an overflow on disk
+ * when the appender can't keep up. Writing an event is a copy into the page cache, much cheaper than formatting it
+ * and writing it to a slow log file, so the daemon keeps draining the queue and memory stays bounded.
+ * <p>
+ * Events are stored with {@link LogEventCodec}, each prefixed by its length. The file is a scratch area:
+ * once every spilled event is replayed, writing starts back at its beginning. Consumer-side only, not thread-safe.
+ * @author Zenon
+ */
+public class LogSpill {
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int writePosition, readPosition;
+    private final LogEvent replayed = new LogEvent();
+
+    /**
+     * Maps the spill file, creating it if needed.
+     * @param file the spill file
+     * @param capacity the size in bytes of the spill file
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public LogSpill(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+    }
+
+    /**
+     * Appends an event to the spill, its message formatted if it's a template.
+     * @param e the event
+     * @return false if the spill is full
+     */
+    public boolean write(LogEvent e){
+        String msg = e.getMessage();
+        int length = 4 + LogEventCodec.encodedLength(e.threadName, msg, e.throwable);
+        if (writePosition + length > capacity)
+            return false;
+        buffer.putInt(writePosition, length);
+        LogEventCodec.encode(buffer, writePosition + 4, e.time, e.threadName, msg, e.throwable, e.lvl);
+        writePosition += length;
+        return true;
+    }
+
+    /**
+     * Replays spilled events in order.
+     * The event given to the consumer is re-used for the next one.
+     * @param consumer the consumer of the replayed events
+     * @param max the maximum number of events to replay
+     * @return the number of replayed events
+     */
+    public int replay(Consumer<LogEvent> consumer, int max){
+        int n = 0;
+        while (n < max && readPosition < writePosition){
+            LogEventCodec.decode(buffer, readPosition + 4, replayed);
+            readPosition += buffer.getInt(readPosition);
+            consumer.accept(replayed);
+            n++;
+        }
+        if (readPosition == writePosition)
+            readPosition = writePosition = 0;   // everything caught up, start over
+        return n;
+    }
+
+    /**
+     *
+     * @return whether there is nothing to replay
+     */
+    public boolean isEmpty(){
+        return writePosition == 0;
+    }
+}
@@ -0,0 +1,219 @@
+package com.xenon.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Follows a log file, like <code>tail -F</code>, and ships what's appended to it to a channel, e.g. a socket to
+ * a log collector. Bytes go from the page cache to the channel with {@link FileChannel#transferTo}, never through
+ * the heap, so shipping costs next to no CPU.
+ * <p>
+ * The position reached is the pair {@link #fileId()}, {@link #offset()}: saved and given back, it resumes shipping
+ * where it stopped, in the right file. If the log was rolled meanwhile, the file the offset belongs to is looked up
+ * among the siblings of the log, and its rest is shipped first.
+ * <p>
+ * When the file is replaced by a new one (rolled), the old one is shipped until it stops growing, a writer may
+ * still be appending to it, then the new one is followed from its start. A file shorter than the offset is deemed
+ * truncated and followed from its start. File ids are the file system's file keys: where there are none, rolling
+ * shows up as a truncation at best.
+ * <p>
+ * Bytes are shipped as the writer flushes them, which may be in the middle of an event: the next call ships the
+ * rest. Not thread-safe.
+ * @author Zenon
+ */
+public class LogTail implements Closeable {
+
+    private final Path file;
+    private FileChannel channel;
+    private String fileId;
+    private long offset;
+
+    /**
+     * Size of the file being read when it was found rolled, -1 if it wasn't.
+     */
+    private long rolledSize = -1;
+    /**
+     * Whether the last transfer stopped because the target was full.
+     */
+    private boolean full;
+
+    /**
+     * Follows the log file from its start.
+     * @param file the log file, which may not exist yet
+     */
+    public LogTail(Path file){
+        this(file, null, 0);
+    }
+
+    /**
+     * Resumes following the log file from a saved position.
+     * @param file the log file, which may not exist yet
+     * @param fileId the saved {@link #fileId()}, null if unknown, in which case the offset applies to the file at
+     *               the path
+     * @param offset the saved {@link #offset()}
+     * @throws IllegalArgumentException if offset is negative
+     */
+    public LogTail(Path file, String fileId, long offset){
+        if (offset < 0)
+            throw new IllegalArgumentException("offset must be positive. Given "+offset);
+        this.file = file;
+        this.fileId = fileId;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the offset in the current file of the next byte to ship
+     */
+    public long offset(){
+        return offset;
+    }
+
+    /**
+     * @return the id of the file the offset belongs to, null if no file was opened yet or the file system has no
+     * file keys
+     */
+    public String fileId(){
+        return fileId;
+    }
+
+    /**
+     * Ships everything appended to the log so far, moving on to the new file once a rolled one stopped growing.
+     * Returns early if the target can't take more, e.g. a non-blocking socket whose buffer is full.
+     * @param target the channel to ship to
+     * @return the number of bytes shipped
+     * @throws IOException if reading the log or writing to the target fails
+     */
+    public long ship(WritableByteChannel target) throws IOException {
+        long shipped = 0;
+        while (true){
+            if (channel == null && !open())
+                return shipped;
+            shipped += transfer(target);
+            if (full || !rolled())
+                return shipped;
+
+            long size = channel.size();
+            if (size != rolledSize){    // may still be written to, check again next time
+                rolledSize = size;
+                return shipped;
+            }
+            channel.close();    // old file shipped and quiet, move on to the new one
+            channel = null;
+            fileId = null;
+            offset = 0;
+            rolledSize = -1;
+        }
+    }
+
+    /**
+     * Ships the log as it grows, until the calling thread is interrupted.
+     * @param target the channel to ship to
+     * @param pollMillis how long to wait when there's nothing new
+     * @param checkpoint given the file id and the offset after each shipment, to save them
+     * @throws IOException if reading the log or writing to the target fails
+     */
+    public void follow(WritableByteChannel target, long pollMillis, ObjLongConsumer<String> checkpoint)
+            throws IOException {
+        Objects.requireNonNull(checkpoint);
+        while (!Thread.currentThread().isInterrupted()){
+            if (ship(target) > 0)
+                checkpoint.accept(fileId, offset);
+            else
+                LockSupport.parkNanos(pollMillis * 1_000_000);
+        }
+    }
+
+    /**
+     * Transfers what the current file holds beyond the offset.
+     */
+    private long transfer(WritableByteChannel target) throws IOException {
+        long size = channel.size(), shipped = 0;
+        if (size < offset)
+            offset = 0;     // truncated
+        full = false;
+        while (offset < size){
+            long n = channel.transferTo(offset, size - offset, target);
+            if (n == 0){
+                full = true;
+                break;
+            }
+            offset += n;
+            shipped += n;
+        }
+        return shipped;
+    }
+
+    /**
+     * Opens the file the position belongs to: the file at the path, or the rolled file with the saved id.
+     * @return false if there's no file yet
+     */
+    private boolean open() throws IOException {
+        Path path = file;
+        if (fileId != null && !fileId.equals(idOf(file))){
+            path = find(fileId);
+            if (path == null){      // gone, the saved offset means nothing anymore
+                fileId = null;
+                offset = 0;
+                path = file;
+            }
+        }
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        fileId = idOf(path);
+        return true;
+    }
+
+    /**
+     * @return the sibling of the log file with the given id, null if there's none
+     */
+    private Path find(String id) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(dir)){
+            for (Path p : siblings)
+                if (Files.isRegularFile(p) && id.equals(idOf(p)))
+                    return p;
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the path now leads to another file than the one being read
+     */
+    private boolean rolled() throws IOException {
+        String id = idOf(file);
+        return id != null && !id.equals(fileId);
+    }
+
+    /**
+     * @return the id of the file at the path, null if there's none or the file system has no file keys
+     */
+    private static String idOf(Path path) throws IOException {
+        try {
+            Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            return key == null ? null : key.toString();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+        channel = null;
+    }
+}
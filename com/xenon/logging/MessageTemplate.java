@@ -0,0 +1,126 @@
+package com.xenon.logging;
+
+import com.xenon.utils.DecimalUtils;
+
+import java.util.ArrayList;
+
+/**
+ * A parameterized message, such as <code>"user {} logged in from {}"</code>, parsed once into its literal segments
+ * and placeholder slots. Formatting then only copies segments and arguments, without scanning the template again.
+ * <p>
+ * Placeholders are <code>{}</code>. Arguments are written with {@link String#valueOf(Object)}, or as
+ * <code>[toString() failed: &lt;exception&gt;]</code> if it throws. Placeholders left without argument are written
+ * as is, and extra arguments are ignored.
+ * <p>
+ * Parsed templates are cached by {@link #of(String)}, keyed by the identity of the template string: templates
+ * are nearly always constants, so the lookup is a hash and a reference comparison.
+ * @author Zenon
+ */
+public final class MessageTemplate {
+
+    /**
+     * Number of entries of the cache, a power of 2.
+     */
+    private static final int CACHE_SIZE = 1 << 10;
+
+    /**
+     * Direct-mapped cache: a template evicts the entry of its slot. Entries are immutable, so races between
+     * consumer threads at worst parse a template twice.
+     */
+    private static final MessageTemplate[] cache = new MessageTemplate[CACHE_SIZE];
+
+    private final String template;
+    /**
+     * segments[i] is written before argument i. segments has one more element than there are placeholders:
+     * the trailing text.
+     */
+    private final String[] segments;
+
+    /**
+     * Returns the parsed form of the template, from the cache if it was parsed recently.
+     * @param template the template
+     * @return the parsed template
+     */
+    public static MessageTemplate of(String template){
+        final int index = System.identityHashCode(template) & (CACHE_SIZE - 1);
+        MessageTemplate t = cache[index];
+        if (t == null || t.template != template)
+            cache[index] = t = new MessageTemplate(template);
+        return t;
+    }
+
+    /**
+     * Parses a new template. Prefer {@link #of(String)}.
+     * @param template the template
+     */
+    public MessageTemplate(String template){
+        this.template = template;
+        var segments = new ArrayList<String>();
+        int start = 0;
+        for (int i = template.indexOf("{}"); i >= 0; i = template.indexOf("{}", start)){
+            segments.add(template.substring(start, i));
+            start = i + 2;
+        }
+        segments.add(template.substring(start));
+        this.segments = segments.toArray(new String[0]);
+    }
+
+    /**
+     * @return the number of placeholders
+     */
+    public int placeholders(){
+        return segments.length - 1;
+    }
+
+    /**
+     * Formats the message.
+     * @param args the arguments, in the order of the placeholders
+     * @param b the builder the message is appended to
+     * @return the given builder
+     */
+    public StringBuilder format(Object[] args, StringBuilder b){
+        final int n = segments.length - 1;
+        for (int i = 0; i < n; i++){
+            b.append(segments[i]);
+            if (i < args.length)
+                append(args[i], b);
+            else
+                b.append("{}");
+        }
+        return b.append(segments[n]);
+    }
+
+    /**
+     * Appends the argument, unboxing numbers and booleans so that they don't go through a temporary string.
+     * Doubles are written as the shortest decimal that parses back to them, see {@link DecimalUtils}.
+     */
+    private static void append(Object arg, StringBuilder b){
+        if (arg instanceof Integer i)
+            DecimalUtils.append(b, i.intValue());
+        else if (arg instanceof Long l)
+            DecimalUtils.append(b, l.longValue());
+        else if (arg instanceof Double d)
+            DecimalUtils.append(b, d.doubleValue());
+        else if (arg instanceof Boolean z)
+            b.append(z.booleanValue());
+        else
+            b.append(toString(arg));
+    }
+
+    /**
+     * Formatting runs on the threads of the logging system: an argument whose <code>toString()</code> throws must
+     * neither kill them nor lose the event, so it's written as <code>[toString() failed: &lt;exception&gt;]</code>.
+     */
+    private static String toString(Object arg){
+        try {
+            return String.valueOf(arg);
+        } catch (RuntimeException e) {
+            return "[toString() failed: " + e + "]";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,365 @@
+package com.xenon.logging;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends log events to a collector over TCP or UDP, without ever blocking the logging daemon.
+ * <p>
+ * Events are framed into an off-heap buffer as they're appended, and the buffer is written at the end of each
+ * batch: over TCP, a single non-blocking write sends every event of the batch, so the number of system calls per
+ * event stays close to zero under load. Over UDP, each event is a datagram of its own.
+ * <p>
+ * While disconnected, or while the collector is slower than the logs, events pile up in the buffer; once it's full,
+ * new events are dropped and counted, see {@link #dropped()}. Connections are opened non-blocking and retried with
+ * an exponential backoff, from 100 ms up to 30 s. The appender only acts when the daemon calls it, so after a
+ * disconnection, buffered events are sent once new events come.
+ * <p>
+ * Over TCP, a collector closing the connection is detected before each write, by a non-blocking read reaching the
+ * end of the stream: the batch is then kept for the next connection. Events written right before the collector
+ * went down, accepted by the kernel but never read, are lost, as with any TCP client.
+ * @author Zenon
+ */
+public final class NetworkAppender implements Appender {
+
+    /**
+     * How events are carried.
+     */
+    public enum Transport{
+        /**
+         * A stream, through which each batch is sent at once.
+         */
+        TCP,
+        /**
+         * One datagram per event, possibly lost, truncated to {@link #MAX_DATAGRAM} bytes.
+         */
+        UDP
+    }
+
+    /**
+     * How events are delimited.
+     */
+    public enum Framing{
+        /**
+         * RFC 5424 syslog messages, of facility <code>user</code>, with the octet counting of RFC 6587 over TCP:
+         * <code>LENGTH SP &lt;PRI&gt;1 TIMESTAMP HOSTNAME - - - - MSG</code>.
+         */
+        SYSLOG,
+        /**
+         * The UTF-8 bytes of the formatted event, prefixed by their number as a 4-byte big-endian int.
+         */
+        LENGTH_PREFIXED
+    }
+
+    public static final int MAX_DATAGRAM = 65_507;
+
+    private static final long MIN_BACKOFF = TimeUnit.MILLISECONDS.toNanos(100), MAX_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Syslog severities of {@link LogManager.Level}s, by ordinal.
+     */
+    private static final int[] SEVERITIES = {7, 6, 4, 3, 2};
+    private static final int FACILITY_USER = 1;
+
+    private final InetSocketAddress address;
+    private final Transport transport;
+    private final Framing framing;
+    private final LogLayout layout;
+    private final String hostName;
+
+    /**
+     * Frames waiting to be sent, in write mode. Always framed for TCP, so that frames can be told apart:
+     * over UDP, the octet count of syslog frames is dropped when sending.
+     */
+    private final ByteBuffer pending;
+    /**
+     * Bytes of the first pending frame still to send, if it was partially sent, 0 otherwise.
+     */
+    private int headRemaining;
+
+    private final StringBuilder line = new StringBuilder();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer encoded = ByteBuffer.allocate(1 << 10);
+    /**
+     * Receives what the collector sends, which is discarded: only the end of the stream matters.
+     */
+    private final ByteBuffer probe = ByteBuffer.allocate(1 << 6);
+
+    private ByteChannel channel;
+    private boolean connected;
+    private long nextAttempt, backoff = MIN_BACKOFF;
+    private volatile long dropped;
+
+    private NetworkAppender(InetSocketAddress address, Transport transport, Framing framing, LogLayout layout,
+                            int capacity){
+        this.address = address;
+        this.transport = transport;
+        this.framing = framing;
+        this.layout = layout;
+        this.hostName = localHostName();
+        pending = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Builds a new network appender, which connects at the first batch.
+     * @param address the address of the collector
+     * @param transport how events are carried
+     * @param framing how events are delimited
+     * @param layout the layout of the events, e.g. <code>new LogLayout("[%t] %m")</code> with syslog, whose header
+     *               already holds the time and the level
+     * @param capacity the size in bytes of the buffer holding events not sent yet
+     * @return the appender, to register with {@link LogManager#setAppenders(Appender...)}
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public static NetworkAppender build(InetSocketAddress address, Transport transport, Framing framing,
+                                        LogLayout layout, int capacity){
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive. Given "+capacity);
+        return new NetworkAppender(address, transport, framing, layout, capacity);
+    }
+
+    /**
+     * @return the number of events dropped so far, because the buffer was full or the connection broke in the
+     * middle of them
+     */
+    public long dropped(){
+        return dropped;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        line.setLength(0);
+        if (framing == Framing.SYSLOG){
+            line.append('<').append(FACILITY_USER * 8 + SEVERITIES[event.lvl.ordinal()]).append(">1 ")
+                    .append(Instant.ofEpochMilli(event.time)).append(' ')
+                    .append(hostName).append(" - - - - ");
+        }
+        layout.format(event, line);
+        int length = encode();
+        if (transport == Transport.UDP)
+            length = Math.min(length, MAX_DATAGRAM - (framing == Framing.LENGTH_PREFIXED ? 4 : 0));
+
+        int size = framing == Framing.LENGTH_PREFIXED ? 4 + length : digits(length) + 1 + length;
+        if (pending.remaining() < size)
+            send();     // make room if we can
+        if (pending.remaining() < size){
+            dropped++;
+            return;
+        }
+        if (framing == Framing.LENGTH_PREFIXED)
+            pending.putInt(length);
+        else
+            pending.put(Integer.toString(length).getBytes(StandardCharsets.US_ASCII)).put((byte) ' ');
+        pending.put(encoded.array(), 0, length);
+    }
+
+    @Override
+    public void endOfBatch() {
+        send();
+    }
+
+    @Override
+    public void close() {
+        send();     // last chance, without waiting
+        disconnect();
+    }
+
+    /**
+     * Encodes {@link #line} into {@link #encoded}.
+     * @return the number of bytes
+     */
+    private int encode(){
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true){
+            encoder.reset();
+            encoded.clear();
+            CoderResult result = encoder.encode(chars, encoded, true);
+            if (!result.isOverflow())
+                result = encoder.flush(encoded);
+            if (!result.isOverflow())
+                return encoded.position();
+            encoded = ByteBuffer.allocate(encoded.capacity() << 1);
+            chars.rewind();
+        }
+    }
+
+    /**
+     * Sends as much of the pending frames as the channel takes right now, connecting first if needed.
+     */
+    private void send(){
+        if (pending.position() == 0 || !connect())
+            return;
+        pending.flip();
+        try {
+            if (transport == Transport.TCP){
+                if (closedByPeer())
+                    throw new EOFException("connection closed by the collector");
+                sent(pending.position(), channel.write(pending));
+            }
+            else
+                sendDatagrams();
+        } catch (IOException e) {
+            disconnect();
+            if (headRemaining > 0){     // a partial frame would corrupt the stream, drop its rest
+                pending.position(pending.position() + headRemaining);
+                headRemaining = 0;
+                dropped++;
+            }
+        } finally {
+            pending.compact();
+        }
+    }
+
+    /**
+     * @return whether the collector closed the connection
+     */
+    private boolean closedByPeer() throws IOException {
+        int n;
+        do {
+            probe.clear();
+        } while ((n = channel.read(probe)) > 0);
+        return n < 0;
+    }
+
+    private void sendDatagrams() throws IOException {
+        DatagramChannel datagrams = (DatagramChannel) channel;
+        final int end = pending.limit();
+        while (pending.position() < end){
+            int start = pending.position(), size = frameLength(start);
+            int payload = framing == Framing.SYSLOG ? start + size - syslogLength(start) : start;
+            int n;
+            pending.position(payload).limit(start + size);
+            try {
+                n = datagrams.write(pending);
+            } catch (IOException e) {
+                pending.position(start);    // kept for the next connection
+                throw e;
+            } finally {
+                pending.limit(end);
+            }
+            if (n == 0){     // no room in the socket buffer
+                pending.position(start);
+                return;
+            }
+            pending.position(start + size);
+        }
+    }
+
+    /**
+     * Follows frames through bytes just written to the stream, to know if the last one was only partially sent.
+     * @param from the index of the first byte written
+     * @param n the number of bytes written
+     */
+    private void sent(int from, int n){
+        for (int p = from, end = from + n; p < end;){
+            if (headRemaining == 0)
+                headRemaining = frameLength(p);
+            int k = Math.min(headRemaining, end - p);
+            headRemaining -= k;
+            p += k;
+        }
+    }
+
+    /**
+     * @param start the index of a frame in {@link #pending}
+     * @return the size of the frame, its header included
+     */
+    private int frameLength(int start){
+        if (framing == Framing.LENGTH_PREFIXED)
+            return 4 + pending.getInt(start);
+        int length = syslogLength(start);
+        return digits(length) + 1 + length;
+    }
+
+    /**
+     * @return the octet count of the syslog frame at the given index
+     */
+    private int syslogLength(int start){
+        int length = 0;
+        for (byte b; (b = pending.get(start++)) != ' ';)
+            length = length * 10 + (b - '0');
+        return length;
+    }
+
+    private static int digits(int n){
+        int d = 1;
+        while ((n /= 10) != 0)
+            d++;
+        return d;
+    }
+
+    /**
+     * Opens the channel if needed and allowed by the backoff, and completes the connection if pending.
+     * @return whether the channel is connected
+     */
+    private boolean connect(){
+        if (connected)
+            return true;
+        try {
+            if (channel == null){
+                long now = System.nanoTime();
+                if (now - nextAttempt < 0)
+                    return false;
+                if (transport == Transport.TCP){
+                    SocketChannel socket = SocketChannel.open();
+                    socket.configureBlocking(false);
+                    channel = socket;
+                    socket.connect(address);
+                } else {
+                    DatagramChannel datagrams = DatagramChannel.open();
+                    datagrams.configureBlocking(false);
+                    channel = datagrams;
+                    datagrams.connect(address);
+                }
+            }
+            connected = transport == Transport.UDP || ((SocketChannel) channel).finishConnect();
+            if (connected)
+                backoff = MIN_BACKOFF;
+            return connected;
+        } catch (IOException e) {
+            disconnect();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the channel, the next connection being attempted after the backoff, which doubles.
+     */
+    private void disconnect(){
+        if (channel != null){
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        channel = null;
+        connected = false;
+        nextAttempt = System.nanoTime() + backoff;
+        backoff = Math.min(backoff << 1, MAX_BACKOFF);
+    }
+
+    private static String localHostName(){
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "-";
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.xenon.logging;
+
+import java.text.MessageFormat;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link System.LoggerFinder} provider routing {@link System.Logger}s, the JDK's own included, to
+ * {@link LogManager}'s queue instead of logging synchronously.
+ * <p>
+ * Opt-in: this project doesn't register it, as it takes over the logs of every library and of the JDK itself.
+ * To use it, the application ships a <code>META-INF/services/java.lang.System$LoggerFinder</code> file holding
+ * <code>com.xenon.logging.SystemLoggerFinder</code>, or a <code>provides</code> clause in its module descriptor.
+ * JDK components may then log while {@link LogManager} starts, from the starting thread or from threads it waits
+ * for: their events are held until the start completes, instead of waiting for it.
+ * <p>
+ * Levels map to {@link LogManager.Level}: TRACE and DEBUG to DEBUG, WARNING to WARN, and the others by name.
+ * The level is checked against {@link LogManager#isEnabled(LogManager.Level)} before anything is formatted or
+ * queued. Messages with parameters use {@link MessageFormat}, as the {@link System.Logger} contract requires,
+ * and are formatted by the caller.
+ * @author Zenon
+ */
+public class SystemLoggerFinder extends System.LoggerFinder {
+
+    private final ConcurrentHashMap<String, SystemLogger> loggers = new ConcurrentHashMap<>();
+
+    @Override
+    public System.Logger getLogger(String name, Module module) {
+        return loggers.computeIfAbsent(name, SystemLogger::new);
+    }
+
+    /**
+     * @param level a {@link System.Logger} level
+     * @return the matching level, or null for {@link System.Logger.Level#OFF}
+     */
+    static LogManager.Level map(System.Logger.Level level){
+        return switch (level){
+            case ALL, TRACE, DEBUG -> LogManager.Level.DEBUG;
+            case INFO -> LogManager.Level.INFO;
+            case WARNING -> LogManager.Level.WARN;
+            case ERROR -> LogManager.Level.ERROR;
+            case OFF -> null;
+        };
+    }
+
+    /**
+     * A {@link System.Logger} queuing to {@link LogManager}.
+     */
+    private static final class SystemLogger implements System.Logger {
+
+        private final String name;
+
+        SystemLogger(String name){
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isLoggable(Level level) {
+            LogManager.Level l = map(level);
+            return l != null && LogManager.isEnabled(l);
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+            LogManager.Level l = map(level);
+            if (l == null || !LogManager.isEnabled(l))
+                return;
+            msg = localize(bundle, msg);
+            LogManager.queueLog(thrown == null ? msg : msg + thrown.getMessage(), l);
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+            LogManager.Level l = map(level);
+            if (l == null || !LogManager.isEnabled(l))
+                return;
+            format = localize(bundle, format);
+            LogManager.queueLog(params == null || params.length == 0 ? format : MessageFormat.format(format, params), l);
+        }
+
+        private static String localize(ResourceBundle bundle, String key){
+            if (bundle == null || key == null)
+                return String.valueOf(key);
+            try {
+                return bundle.getString(key);
+            } catch (MissingResourceException e) {
+                return key;
+            }
+        }
+    }
+}
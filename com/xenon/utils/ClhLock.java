@@ -0,0 +1,124 @@
+package com.xenon.utils;
+
+import com.xenon.utils.abstraction.Lockable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Craig, Landin and Hagersten queue lock.
+ * Each waiter enqueues its own node with a single swap on the tail, then spins on its predecessor's node only,
+ * so a release invalidates exactly one waiter's cache line instead of all of them. FIFO, like {@link TicketLock}.
+ * <p>
+ * Nodes are kept per thread and recycled: on release, a thread takes over its predecessor's node. A node can thus
+ * be the tail again right after being released, see {@link #tryLock()}.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class ClhLock implements Lockable {
+
+    private static final VarHandle TAIL, LOCKED;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            TAIL = lookup.in(ClhLock.class).findVarHandle(ClhLock.class, "tail", Node.class);
+            LOCKED = lookup.in(NodeValue.class).findVarHandle(NodeValue.class, "locked", boolean.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final int SPINS_BEFORE_YIELD = 1 << 10;
+
+    private Node tail = new Node();
+    private final ThreadLocal<Node> node = ThreadLocal.withInitial(Node::new);
+    private final ThreadLocal<Node> predecessor = new ThreadLocal<>();
+
+    /**
+     *
+     * @return a new <code>ClhLock</code> object
+     */
+    public static ClhLock create(){
+        return new ClhLock();
+    }
+    private ClhLock(){}
+
+    /**
+     * Enqueues this thread, then spins on its predecessor until it releases the lock.
+     */
+    @Override
+    public void lock(){
+        Node n = node.get();
+        LOCKED.setOpaque(n, true);  // published by the swap below
+        awaitRelease((Node) TAIL.getAndSet(this, n));
+    }
+
+    /**
+     * Spins until the predecessor releases the lock, then keeps it to take it over on release.
+     */
+    private void awaitRelease(Node pred){
+        int spins = 0;
+        while ((boolean) LOCKED.getAcquire(pred)){
+            Thread.onSpinWait();
+            if (++spins == SPINS_BEFORE_YIELD){
+                spins = 0;
+                Thread.yield();
+            }
+        }
+        predecessor.set(pred);
+    }
+
+    /**
+     * Enqueues this thread only if the lock looks free.
+     * <p>
+     * The tail may be released, then recycled and locked again by another thread in between the check and the swap
+     * (ABA), the swap succeeding anyway: this thread is then enqueued behind that holder, and can't leave the queue.
+     * In that rare case, it waits for the holder's release like {@link #lock()} does, rather than return while
+     * the lock is held. Otherwise, it never waits.
+     * @return whether acquiring the lock succeeded
+     */
+    @Override
+    public boolean tryLock(){
+        Node pred = (Node) TAIL.getAcquire(this);
+        if ((boolean) LOCKED.getAcquire(pred))
+            return false;
+        Node n = node.get();
+        LOCKED.setOpaque(n, true);
+        if (!TAIL.compareAndSet(this, pred, n))
+            return false;
+        awaitRelease(pred);     // returns right away, unless pred was recycled and locked again
+        return true;
+    }
+
+    /**
+     * Releases the lock to the successor, if any, and recycles the predecessor's node.
+     */
+    @Override
+    public void unlock(){
+        Node n = node.get();
+        LOCKED.setRelease(n, false);
+        node.set(predecessor.get());    // nobody spins on the predecessor anymore
+    }
+
+    /*
+     * A node is spun on by its successor, so locked is padded on both sides, through inheritance as in Cursor.
+     * Padding classes start with an int, which takes the 4 bytes the JVM would otherwise fill with locked.
+     */
+
+    @SuppressWarnings("unused")
+    private abstract static class NodeLhsPadding {
+        int p0;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private abstract static class NodeValue extends NodeLhsPadding {
+        boolean locked;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Node extends NodeValue {
+        int q0;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+}
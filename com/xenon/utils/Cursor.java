@@ -0,0 +1,155 @@
+package com.xenon.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A 64-bit sequence used as cursor by the lock-free ring buffers, much like LMAX Disruptor's <code>Sequence</code>.
+ * <p>
+ * The value is padded on both sides by 56 bytes, through class inheritance as the JVM is free to reorder the fields
+ * of a single class, so that two cursors never share a cache line. Without it, a producer moving head and a consumer
+ * moving tail keep invalidating each other's cache line (false sharing).
+ * <p>
+ * Being 64-bit, a cursor never needs to be brought back modulo the capacity: at one increment per nanosecond,
+ * it takes nearly 300 years to overflow. Indexes are obtained with <code>(int) (cursor &amp; modulo)</code>.
+ * <p>
+ * Accessors are named after {@link VarHandle}'s access modes, from the weakest to the strongest:
+ * plain, opaque, acquire/release and volatile.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class Cursor extends RhsPadding {
+
+    /**
+     * The handle for the value field, used to simulate {@link java.util.concurrent.atomic.AtomicLong}.
+     */
+    private static final VarHandle HANDLE;
+
+    static {
+        try {
+            HANDLE = MethodHandles.lookup().in(Value.class)
+                    .findVarHandle(Value.class, "value", long.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a cursor starting at 0.
+     */
+    public Cursor(){}
+
+    /**
+     *
+     * @param initialValue initial value
+     */
+    public Cursor(long initialValue){
+        value = initialValue;
+    }
+
+    /**
+     * Plain read. Only safe from the thread that writes the cursor.
+     * @return the value
+     */
+    public long get(){
+        return value;
+    }
+
+    /**
+     * Plain write. Only safe when nobody else reads the cursor concurrently.
+     * @param newValue the new value
+     */
+    public void set(long newValue){
+        value = newValue;
+    }
+
+    /**
+     * Reads the value atomically, without any ordering with surrounding accesses.
+     * @return the value
+     */
+    public long getOpaque(){
+        return (long) HANDLE.getOpaque(this);
+    }
+
+    /**
+     * Writes the value atomically, without any ordering with surrounding accesses.
+     * @param newValue the new value
+     */
+    public void setOpaque(long newValue){
+        HANDLE.setOpaque(this, newValue);
+    }
+
+    /**
+     * Reads the value. Subsequent loads and stores can't be moved before it.
+     * Pairs with {@link #setRelease(long)}: everything written before the release is visible after the acquire.
+     * @return the value
+     */
+    public long getAcquire(){
+        return (long) HANDLE.getAcquire(this);
+    }
+
+    /**
+     * Writes the value. Previous loads and stores can't be moved after it.
+     * This is the cheap way of publishing a slot: on x86, a plain store.
+     * @param newValue the new value
+     */
+    public void setRelease(long newValue){
+        HANDLE.setRelease(this, newValue);
+    }
+
+    /**
+     * Volatile read.
+     * @return the value
+     */
+    public long getVolatile(){
+        return (long) HANDLE.getVolatile(this);
+    }
+
+    /**
+     * Volatile write. Equivalent of {@link java.util.concurrent.atomic.AtomicLong#set(long)}.
+     * @param newValue the new value
+     */
+    public void setVolatile(long newValue){
+        HANDLE.setVolatile(this, newValue);
+    }
+
+    /**
+     * Compare &amp; Swap.
+     * Equivalent to {@link java.util.concurrent.atomic.AtomicLong#compareAndSet(long, long)}.
+     * @param expected expected value
+     * @param newValue new value
+     * @return whether it succeeded
+     */
+    public boolean compareAndSet(long expected, long newValue){
+        return HANDLE.compareAndSet(this, expected, newValue);
+    }
+
+    /**
+     * Fetch &amp; Add.
+     * Equivalent to {@link java.util.concurrent.atomic.AtomicLong#getAndAdd(long)}.
+     * @param n added delta
+     * @return the value before the n were added
+     */
+    public long getAndAdd(long n){
+        return (long) HANDLE.getAndAdd(this, n);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getVolatile());
+    }
+}
+
+@SuppressWarnings("unused")
+abstract class LhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class Value extends LhsPadding {
+    protected long value;
+}
+
+@SuppressWarnings("unused")
+abstract class RhsPadding extends Value {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+}
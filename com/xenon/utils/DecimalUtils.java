@@ -0,0 +1,272 @@
+package com.xenon.utils;
+
+import java.math.BigInteger;
+
+/**
+ * Decimal representations of numbers, written straight into a {@link StringBuilder} or a char buffer, without any
+ * temporary string. Used by the log layouts and by {@link UnsafeBufferedWriter}.
+ * <p>
+ * Doubles are written with the shortest decimal that parses back to the same double, as {@link Double#toString(double)}
+ * specifies since JDK 19, with Raffaello Giulietti's Schubfach algorithm (the one JDK 19 uses). Older JDKs sometimes
+ * write a digit or two more than needed: there, both representations parse back to the same double.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public final class DecimalUtils {
+
+    /*
+     * Schubfach constants for doubles, see "The Schubfach way to render doubles", R. Giulietti.
+     */
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << P - 1;
+    private static final long C_TINY = 3;
+    private static final int K_MIN = -324, K_MAX = 292;
+    private static final int BQ_MASK = (1 << 11) - 1;
+    private static final long T_MASK = (1L << P - 1) - 1;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    /**
+     * 10^i for i from 0 to 18.
+     */
+    private static final long[] POW10 = new long[19];
+
+    /**
+     * For k from {@link #K_MIN} to {@link #K_MAX}, the 126 bits of g = floor(10^-k 2^-r) + 1, r being such that
+     * 2^125 &lt;= g &lt; 2^126: the 63 higher bits at 2 (k - K_MIN), the 63 lower ones right after.
+     */
+    private static final long[] G = new long[K_MAX - K_MIN + 1 << 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+
+        final BigInteger mask63 = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++){
+            int shift = 125 - flog2pow10(-k);   // -r
+            BigInteger g = k <= 0
+                    ? BigInteger.TEN.pow(-k).shiftLeft(shift)   // a negative shift is a right one, rounding down
+                    : BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+            g = g.add(BigInteger.ONE);
+            G[k - K_MIN << 1] = g.shiftRight(63).longValue();
+            G[(k - K_MIN << 1) + 1] = g.and(mask63).longValue();
+        }
+    }
+
+    private DecimalUtils(){}
+
+    /**
+     * Appends the decimal representation of a long, as {@link StringBuilder#append(long)} would.
+     * @param b the builder
+     * @param v the value
+     * @return the given builder
+     */
+    public static StringBuilder append(StringBuilder b, long v){
+        return appendPadded(b, v, 1);
+    }
+
+    /**
+     * Appends the decimal representation of a long, left-padded with zeros to the given number of digits,
+     * e.g. <code>appendPadded(b, 7, 3)</code> appends "007". The sign, if any, comes before the zeros.
+     * @param b the builder
+     * @param v the value
+     * @param width the minimal number of digits, between 1 and 19
+     * @return the given builder
+     * @throws IllegalArgumentException if width is out of range
+     */
+    public static StringBuilder appendPadded(StringBuilder b, long v, int width){
+        checkWidth(width);
+        if (v == Long.MIN_VALUE)    // can't be negated, and has 19 digits already
+            return b.append("-9223372036854775808");
+        if (v < 0){
+            b.append('-');
+            v = -v;
+        }
+        return appendDigits(b, v, Math.max(width, digits(v)));
+    }
+
+    /**
+     * Appends a double as {@link Double#toString(double)} specifies since JDK 19: the shortest decimal that parses
+     * back to the same double, the closest one if several qualify. Values from 10<sup>-3</sup> included to
+     * 10<sup>7</sup> excluded are written in plain notation, e.g. "1234.5" or "1.0", the others in computerized
+     * scientific notation, e.g. "1.0E-5".
+     * @param b the builder
+     * @param v the value
+     * @return the given builder
+     */
+    public static StringBuilder append(StringBuilder b, double v){
+        final long bits = Double.doubleToRawLongBits(v);
+        final long t = bits & T_MASK;
+        final int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bq == BQ_MASK)
+            return b.append(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        if (bits < 0)
+            b.append('-');
+        if (bq != 0){     // normal
+            final int mq = -Q_MIN + 1 - bq;
+            final long c = C_MIN | t;
+            if (0 < mq & mq < P){   // an integer
+                long f = c >> mq;
+                if (f << mq == c)
+                    return toChars(b, f, 0);
+            }
+            return toDecimal(b, -mq, c, 0);
+        }
+        if (t != 0)     // subnormal
+            return t < C_TINY ? toDecimal(b, Q_MIN, 10 * t, -1) : toDecimal(b, Q_MIN, t, 0);
+        return b.append("0.0");
+    }
+
+    /**
+     * Schubfach: finds the shortest decimal f 10^e in the rounding interval of c 2^q, then appends it.
+     */
+    private static StringBuilder toDecimal(StringBuilder b, int q, long c, int dk){
+        final int out = (int) c & 0x1;
+        final long cb = c << 2;
+        final long cbr = cb + 2;
+        final long cbl;
+        final int k;
+        if (c != C_MIN | q == Q_MIN){
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {    // the interval is asymmetric at powers of 2
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        final int h = q + flog2pow10(-k) + 2;
+        final long g1 = G[k - K_MIN << 1], g0 = G[(k - K_MIN << 1) + 1];
+        final long vb = rop(g1, g0, cb << h);
+        final long vbl = rop(g1, g0, cbl << h);
+        final long vbr = rop(g1, g0, cbr << h);
+
+        final long s = vb >> 2;
+        if (s >= 100){
+            final long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);   // s / 10 * 10
+            final long tp10 = sp10 + 10;
+            final boolean upin = vbl + out <= sp10 << 2;
+            final boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin)
+                return toChars(b, upin ? sp10 : tp10, k);
+        }
+        final long tt = s + 1;
+        final boolean uin = vbl + out <= s << 2;
+        final boolean win = (tt << 2) + out <= vbr;
+        if (uin != win)
+            return toChars(b, uin ? s : tt, k + dk);
+        final long cmp = vb - (s + tt << 1);
+        return toChars(b, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : tt, k + dk);
+    }
+
+    /**
+     * @return g cp 2^-127 rounded to odd, g being g1 2^63 + g0
+     */
+    private static long rop(long g1, long g0, long cp){
+        final long x1 = Math.multiplyHigh(g0, cp);
+        final long y0 = g1 * cp;
+        final long y1 = Math.multiplyHigh(g1, cp);
+        final long z = (y0 >>> 1) + x1;
+        final long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /**
+     * Appends f 10^e, f being positive, as {@link Double#toString(double)} does.
+     */
+    private static StringBuilder toChars(StringBuilder b, long f, int e){
+        while (f % 10 == 0){
+            f /= 10;
+            e++;
+        }
+        final int n = digits(f);
+        final int exponent = e + n - 1;     // of the first digit
+        if (0 <= exponent && exponent < 7){
+            if (e >= 0)
+                return appendDigits(b, f * POW10[e], exponent + 1).append(".0");
+            final long unit = POW10[-e];
+            appendDigits(b, f / unit, exponent + 1).append('.');
+            return appendDigits(b, f % unit, -e);
+        }
+        if (-3 <= exponent && exponent < 0)
+            return appendDigits(b.append("0."), f, -e);    // zero-padded up to the first digit
+        final long unit = POW10[n - 1];
+        appendDigits(b, f / unit, 1).append('.');
+        if (n == 1)
+            b.append('0');
+        else
+            appendDigits(b, f % unit, n - 1);
+        return appendPadded(b.append('E'), exponent, 1);
+    }
+
+    /**
+     * Appends v left-padded with zeros to width digits, width being at least the number of digits of v.
+     * @param v a positive value
+     */
+    private static StringBuilder appendDigits(StringBuilder b, long v, int width){
+        final int end = b.length() + width;
+        b.setLength(end);
+        int i = end;
+        do {
+            b.setCharAt(--i, (char) ('0' + v % 10));
+            v /= 10;
+        } while (v != 0);
+        while (i > end - width)
+            b.setCharAt(--i, '0');
+        return b;
+    }
+
+    /**
+     * Writes v left-padded with zeros to width digits, so that the last one is at end - 1.
+     * @param v a positive value
+     */
+    static void putDigits(char[] buffer, int end, long v, int width){
+        final int start = end - width;
+        int i = end;
+        do {
+            buffer[--i] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (i > start)
+            buffer[--i] = '0';
+    }
+
+    /**
+     * @param v a positive value
+     * @return the number of decimal digits of v
+     */
+    static int digits(long v){
+        int n = 1;
+        while (n < POW10.length && v >= POW10[n])
+            n++;
+        return n;
+    }
+
+    /**
+     * @throws IllegalArgumentException if width isn't between 1 and 19
+     */
+    static void checkWidth(int width){
+        if (width < 1 || width > 19)
+            throw new IllegalArgumentException("width must be between 1 and 19. Given " + width);
+    }
+
+    /**
+     * @return floor(e log10(2))
+     */
+    private static int flog10pow2(int e){
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * @return floor(log10(3/4 2^e))
+     */
+    private static int flog10threeQuartersPow2(int e){
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /**
+     * @return floor(e log2(10))
+     */
+    private static int flog2pow10(int e){
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
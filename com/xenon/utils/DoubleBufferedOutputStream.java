@@ -0,0 +1,150 @@
+package com.xenon.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Output stream writing to an {@link AsynchronousFileChannel} through two buffers: while one buffer is being
+ * written to the file in the background, the caller fills the other one, and they are swapped once the write
+ * completes. The caller only waits on the disk when it fills a buffer before the previous write is over.
+ * <p>
+ * Placed under an {@link UnsafeBufferedWriter}, it turns {@link UnsafeBufferedWriter#flushBuffer()} into a copy,
+ * so that the logging daemon overlaps formatting with disk latency instead of stalling on every write.
+ * Like {@link UnsafeBufferedWriter}, it's meant for a single thread and has no locks.
+ * @author Zenon
+ * @see FilesUtils#newDoubleBufferedWriter(java.nio.file.Path, java.nio.charset.Charset, java.nio.file.OpenOption...)
+ */
+public class DoubleBufferedOutputStream extends OutputStream {
+
+    private static final int defaultBufferSize = 1 << 16;
+
+    private final AsynchronousFileChannel channel;
+    private ByteBuffer active, inFlight;
+    /**
+     * the write of {@link #inFlight}, null if none
+     */
+    private Future<Integer> pending;
+    private long position, inFlightPosition;
+    private boolean forceOnFlush;
+
+    /**
+     * Creates a stream writing at the given position of the channel, with two buffers of 64 KiB.
+     * @param channel the channel to write to, closed with this stream
+     * @param position the position in the file of the first byte written
+     */
+    public DoubleBufferedOutputStream(AsynchronousFileChannel channel, long position){
+        this(channel, position, defaultBufferSize);
+    }
+
+    /**
+     * Creates a stream writing at the given position of the channel.
+     * @param channel the channel to write to, closed with this stream
+     * @param position the position in the file of the first byte written
+     * @param size the size of each of the two buffers
+     * @throws IllegalArgumentException if {@code size <= 0}
+     */
+    public DoubleBufferedOutputStream(AsynchronousFileChannel channel, long position, int size){
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer size <= 0");
+        this.channel = channel;
+        this.position = position;
+        active = ByteBuffer.allocateDirect(size);
+        inFlight = ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!active.hasRemaining())
+            swap();
+        active.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0){
+            int n = Math.min(len, active.remaining());
+            active.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!active.hasRemaining())
+                swap();
+        }
+    }
+
+    /**
+     * Waits for the write in flight, then sends the active buffer to the file and fills the other one.
+     */
+    private void swap() throws IOException {
+        if (active.position() == 0)
+            return;
+        awaitPending();
+
+        ByteBuffer full = active;
+        active = inFlight;
+        inFlight = full;
+
+        inFlight.flip();
+        inFlightPosition = position;
+        position += inFlight.remaining();
+        pending = channel.write(inFlight, inFlightPosition);
+    }
+
+    /**
+     * Waits for the write in flight, if any, to complete. Resumes partial writes.
+     * If the write fails, its bytes are lost and the buffer is emptied all the same, to be reused.
+     */
+    private void awaitPending() throws IOException {
+        if (pending == null)
+            return;
+        try {
+            pending.get();
+            while (inFlight.hasRemaining())
+                channel.write(inFlight, inFlightPosition + inFlight.position()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pending = null;
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Sets whether {@link #flush()} also forces the written bytes to the storage device, so that they survive
+     * a system crash and not only a crash of the process. Default is false.
+     * @param forceOnFlush whether flushing forces the file content
+     * @see AsynchronousFileChannel#force(boolean)
+     */
+    public void setForceOnFlush(boolean forceOnFlush){
+        this.forceOnFlush = forceOnFlush;
+    }
+
+    /**
+     * Sends everything written so far to the file, and waits for it to be written.
+     * Also forces it to the storage device if {@link #setForceOnFlush(boolean) configured}.
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        swap();
+        awaitPending();
+        if (forceOnFlush)
+            channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
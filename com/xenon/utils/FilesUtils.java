@@ -1,13 +1,22 @@
 package com.xenon.utils;
 
+import com.xenon.collections.RecordTorus;
+
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author Zenon
@@ -29,4 +38,69 @@ public class FilesUtils {
         Writer writer = new OutputStreamWriter(Files.newOutputStream(path, options), encoder);
         return new UnsafeBufferedWriter(writer);
     }
+
+    /**
+     * Same as {@link #newUnsafeBufferedWriter(Path, Charset, OpenOption...)}, but the bytes are written to the file
+     * by a {@link DoubleBufferedOutputStream}, so that flushing the writer's buffer doesn't wait for the disk.
+     * {@link StandardOpenOption#APPEND} is supported, though the asynchronous channel doesn't support it itself:
+     * writing simply starts at the end of the file.
+     * @param path the path to the file
+     * @param cs the charset to use for encoding
+     * @param options options specifying how the file is opened
+     * @return the resulting {@link UnsafeBufferedWriter}
+     * @throws IOException if the file can't be opened
+     * @see DoubleBufferedOutputStream
+     */
+    public static UnsafeBufferedWriter newDoubleBufferedWriter(Path path, Charset cs, OpenOption... options)
+            throws IOException {
+        return newDoubleBufferedWriter(path, cs, false, options);
+    }
+
+    /**
+     * Same as {@link #newDoubleBufferedWriter(Path, Charset, OpenOption...)}, optionally forcing the file content
+     * to the storage device each time the writer is flushed.
+     * @param path the path to the file
+     * @param cs the charset to use for encoding
+     * @param forceOnFlush whether flushing the writer forces the file content
+     * @param options options specifying how the file is opened
+     * @return the resulting {@link UnsafeBufferedWriter}
+     * @throws IOException if the file can't be opened
+     * @see DoubleBufferedOutputStream#setForceOnFlush(boolean)
+     */
+    public static UnsafeBufferedWriter newDoubleBufferedWriter(Path path, Charset cs, boolean forceOnFlush,
+                                                               OpenOption... options) throws IOException {
+        Set<OpenOption> set = new HashSet<>(List.of(options));
+        if (set.isEmpty())  // same default as Files.newOutputStream
+            set.addAll(List.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        boolean append = set.remove(StandardOpenOption.APPEND);
+        set.add(StandardOpenOption.WRITE);
+
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, set, null);
+        DoubleBufferedOutputStream stream = new DoubleBufferedOutputStream(channel, append ? channel.size() : 0);
+        stream.setForceOnFlush(forceOnFlush);
+        return new UnsafeBufferedWriter(new OutputStreamWriter(stream, cs.newEncoder()));
+    }
+
+    /**
+     * Maps the given file as a {@link RecordTorus}, creating it if needed. Every process mapping the same file
+     * shares the same ring buffer: its cursors live in the file, and atomic operations on a mapped region are
+     * atomic across processes.
+     * The mapping stays valid after the channel is closed, until the buffer is garbage collected.
+     * @param path the path to the ring file
+     * @param capacity the capacity in bytes of the ring, a power of 2. Must match the one the file was created with
+     * @return the shared ring buffer
+     * @throws IOException if the file can't be opened or mapped
+     * @throws IllegalArgumentException if an existing file doesn't match the capacity
+     */
+    public static RecordTorus mapRecordTorus(Path path, int capacity) throws IOException {
+        final long size = (long) capacity + RecordTorus.TRAILER;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            long current = channel.size();
+            if (current != 0 && current != size)
+                throw new IllegalArgumentException(path+" is a ring of "+(current - RecordTorus.TRAILER)+" bytes");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // grows a new file
+            return RecordTorus.wrap(buffer);
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package com.xenon.utils;
+
+import com.xenon.utils.abstraction.Lockable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mellor-Crummey and Scott queue lock.
+ * Like {@link ClhLock}, waiters form a FIFO queue and each one spins on a flag of its own, but here the flag lives
+ * in the waiter's own node, and the holder hands the lock over explicitly to its successor. Since the holder knows
+ * who's next, waiters can be parked: see {@link #adaptive(int)}.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class McsLock implements Lockable {
+
+    private static final VarHandle TAIL, LOCKED, NEXT, PARKED;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            TAIL = lookup.in(McsLock.class).findVarHandle(McsLock.class, "tail", Node.class);
+            LOCKED = lookup.in(NodeValue.class).findVarHandle(NodeValue.class, "locked", boolean.class);
+            NEXT = lookup.in(NodeValue.class).findVarHandle(NodeValue.class, "next", Node.class);
+            PARKED = lookup.in(NodeValue.class).findVarHandle(NodeValue.class, "parked", boolean.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final int SPINS_BEFORE_YIELD = 1 << 10;
+
+    private Node tail;
+    private final ThreadLocal<Node> node = ThreadLocal.withInitial(Node::new);
+    /**
+     * Spins before parking, or a negative value to never park.
+     */
+    private final int spins;
+
+    /**
+     * Creates a lock whose waiters only spin (yielding once in a while).
+     * @return a new <code>McsLock</code> object
+     */
+    public static McsLock create(){
+        return new McsLock(-1);
+    }
+
+    /**
+     * Creates a lock whose waiters spin with <code>Thread.onSpinWait()</code> at most the given number of times,
+     * then park until the holder hands them the lock. Spinning covers short critical sections,
+     * parking stops burning a core when the holder is slow or preempted.
+     * @param spins the number of spins before parking. 0 parks right away.
+     * @return a new <code>McsLock</code> object
+     * @throws IllegalArgumentException if spins is negative
+     */
+    public static McsLock adaptive(int spins){
+        if (spins < 0)
+            throw new IllegalArgumentException("spins must be positive. Given "+spins);
+        return new McsLock(spins);
+    }
+
+    private McsLock(int spins){
+        this.spins = spins;
+    }
+
+    /**
+     * Enqueues this thread, then waits for its predecessor to hand it the lock.
+     */
+    @Override
+    public void lock(){
+        Node n = node.get();
+        NEXT.setOpaque(n, (Node) null);
+        LOCKED.setOpaque(n, true);
+        Node pred = (Node) TAIL.getAndSet(this, n);
+        if (pred == null)
+            return;
+
+        NEXT.setRelease(pred, n);
+        if (spins < 0)
+            spin(n);
+        else
+            spinThenPark(n);
+    }
+
+    private static void spin(Node n){
+        int s = 0;
+        while ((boolean) LOCKED.getAcquire(n)){
+            Thread.onSpinWait();
+            if (++s == SPINS_BEFORE_YIELD){
+                s = 0;
+                Thread.yield();
+            }
+        }
+    }
+
+    private void spinThenPark(Node n){
+        for (int s = spins; s > 0; s--){
+            if (!(boolean) LOCKED.getAcquire(n))
+                return;
+            Thread.onSpinWait();
+        }
+        n.thread = Thread.currentThread();
+        PARKED.setVolatile(n, true);
+        while ((boolean) LOCKED.getVolatile(n))    // re-checked after publishing parked, see unlock
+            LockSupport.park(this);
+        PARKED.setOpaque(n, false);
+    }
+
+    /**
+     * Takes the lock only if no thread holds it nor waits for it.
+     * @return whether acquiring the lock succeeded
+     */
+    @Override
+    public boolean tryLock(){
+        if (TAIL.getAcquire(this) != null)
+            return false;
+        Node n = node.get();
+        NEXT.setOpaque(n, (Node) null);
+        return TAIL.compareAndSet(this, (Node) null, n);
+    }
+
+    /**
+     * Hands the lock over to the successor, if any.
+     */
+    @Override
+    public void unlock(){
+        Node n = node.get();
+        Node next = (Node) NEXT.getAcquire(n);
+        if (next == null){
+            if (TAIL.compareAndSet(this, n, (Node) null))
+                return;
+            while ((next = (Node) NEXT.getAcquire(n)) == null)    // a successor is between its swap and its link
+                Thread.onSpinWait();
+        }
+        LOCKED.setVolatile(next, false);
+        if ((boolean) PARKED.getVolatile(next))
+            LockSupport.unpark(next.thread);
+    }
+
+    /*
+     * A node is spun on by its owner and written by its predecessor, so its fields are padded on both sides,
+     * through inheritance as in Cursor. Padding classes start with an int, which takes the 4 bytes the JVM would
+     * otherwise fill with a field of the node.
+     */
+
+    @SuppressWarnings("unused")
+    private abstract static class NodeLhsPadding {
+        int p0;
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private abstract static class NodeValue extends NodeLhsPadding {
+        boolean locked, parked;
+        Node next;
+        Thread thread;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Node extends NodeValue {
+        int q0;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+}
@@ -1,15 +1,19 @@
 package com.xenon.utils;
 
+import com.xenon.utils.abstraction.Lockable;
+
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 
 /**
  * A very simple SpinLock implementation in Java, like you can find by hundreds on blogs.
  * Essentially, it's a lock, but without context switching.
+ * Every waiter spins on the same boolean, so under heavy contention prefer {@link TicketLock}, {@link ClhLock}
+ * or {@link McsLock}.
  * @author Zenon
  */
 @SuppressWarnings("all")
-public class SpinLock{
+public class SpinLock implements Lockable {
 
     /**
      * The HANDLE for using atomic operations on {@link #value}
@@ -46,9 +50,10 @@ public class SpinLock{
      * Spins until it manages to get the lock.
      * Uses <code>Thread.yield()</code> to avoid busy-wait.
      */
+    @Override
     public void lock(){
         while ((boolean) HANDLE.compareAndExchangeAcquire(this, false, true))
-            while ((boolean) HANDLE.get(this))
+            while ((boolean) HANDLE.getOpaque(this))
                 Thread.yield();
     }
 
@@ -59,7 +64,7 @@ public class SpinLock{
      */
     public void lockClockBurning(){
         while ((boolean) HANDLE.compareAndExchangeAcquire(this, false, true))
-            while ((boolean) HANDLE.get(this));
+            while ((boolean) HANDLE.getOpaque(this));   // opaque, so that the JIT can't hoist the load out of the loop
     }
 
 
@@ -71,14 +76,16 @@ public class SpinLock{
      * The program should then be spinning on this method until it works.
      * @return whether acquiring the lock succeeded
      */
+    @Override
     public boolean tryLock(){
-        return !(boolean) HANDLE.get(this) && !(boolean) HANDLE.compareAndExchangeAcquire(this, false, true);
+        return !(boolean) HANDLE.getOpaque(this) && !(boolean) HANDLE.compareAndExchangeAcquire(this, false, true);
     }
 
     /**
      * Sets {@link #value} to false, telling other threads the lock is free.
      */
+    @Override
     public void unlock(){
-        HANDLE.set(this, false);
+        HANDLE.setRelease(this, false);
     }
 }
@@ -0,0 +1,116 @@
+package com.xenon.utils;
+
+import com.xenon.utils.abstraction.Lockable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A ticket lock: each thread takes a ticket with a fetch&Add, then waits for the owner counter to reach it.
+ * Contrary to {@link SpinLock}, threads get the lock in FIFO order, so waiting time is bounded.
+ * Waiters still all read the same counter, but they only read it, and the only store is the holder's
+ * {@link #unlock()}. A waiter backs off proportionally to its distance from the owner.
+ * @author Zenon
+ */
+@SuppressWarnings("unused")
+public class TicketLock extends TicketRhsPadding implements Lockable {
+
+    private static final VarHandle NEXT, OWNER;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            NEXT = lookup.in(TicketNext.class).findVarHandle(TicketNext.class, "next", int.class);
+            OWNER = lookup.in(TicketOwner.class).findVarHandle(TicketOwner.class, "owner", int.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Spins after which a waiter yields its time slice, in case the holder is not running.
+     */
+    private static final int SPINS_BEFORE_YIELD = 1 << 10;
+
+    /**
+     *
+     * @return a new <code>TicketLock</code> object
+     */
+    public static TicketLock create(){
+        return new TicketLock();
+    }
+    private TicketLock(){}
+
+    /**
+     * Takes a ticket and spins until it's served.
+     */
+    @Override
+    public void lock(){
+        final int ticket = (int) NEXT.getAndAdd(this, 1);
+        int spins = 0;
+        for (int o; (o = (int) OWNER.getAcquire(this)) != ticket;){
+            for (int i = ticket - o; i > 0; i--)  // proportional back-off
+                Thread.onSpinWait();
+            if (++spins == SPINS_BEFORE_YIELD){
+                spins = 0;
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Takes a ticket only if it would be served right away.
+     * @return whether acquiring the lock succeeded
+     */
+    @Override
+    public boolean tryLock(){
+        int o = (int) OWNER.getAcquire(this);
+        return NEXT.compareAndSet(this, o, o + 1);
+    }
+
+    /**
+     * Serves the next ticket.
+     */
+    @Override
+    public void unlock(){
+        OWNER.setRelease(this, owner + 1);  // only the holder writes owner
+    }
+}
+
+/*
+ * Padding through inheritance, as in Cursor, so that taking a ticket does not invalidate the cache line waiters spin
+ * on. Each padding class starts with an int: the JVM would otherwise put next or owner in the 4 bytes left free
+ * before the first long of the class above, right next to the other one.
+ */
+
+@SuppressWarnings("unused")
+abstract class TicketLhsPadding {
+    int p0;
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class TicketNext extends TicketLhsPadding {
+    /**
+     * the next ticket to be taken
+     */
+    int next;
+}
+
+@SuppressWarnings("unused")
+abstract class TicketMidPadding extends TicketNext {
+    int q0;
+    long q1, q2, q3, q4, q5, q6, q7;
+}
+
+abstract class TicketOwner extends TicketMidPadding {
+    /**
+     * the ticket currently holding the lock
+     */
+    int owner;
+}
+
+@SuppressWarnings("unused")
+abstract class TicketRhsPadding extends TicketOwner {
+    int r0;
+    long r1, r2, r3, r4, r5, r6, r7;
+}
@@ -53,6 +53,11 @@ public class UnsafeBufferedWriter extends Writer {
 
     private static final int defaultCharBufferSize = 8192;
 
+    /**
+     * Where doubles are rendered before being copied, see {@link #append(double)}.
+     */
+    private final StringBuilder scratch = new StringBuilder(32);
+
     /**
      * Creates a buffered character-output stream that uses a default-sized
      * output buffer.
@@ -208,6 +213,133 @@ public class UnsafeBufferedWriter extends Writer {
         }
     }
 
+    /**
+     * Appends a character sequence. Unlike {@link Writer#append(CharSequence)}, {@link String}s and
+     * {@link StringBuilder}s are copied straight into the buffer, without a temporary string.
+     *
+     * @param  csq  The character sequence to append, "null" if null
+     * @return This writer
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public UnsafeBufferedWriter append(CharSequence csq) throws IOException {
+        if (csq == null)
+            csq = "null";
+        if (csq instanceof StringBuilder sb) {
+            ensureOpen();
+            int b = 0, t = sb.length();
+            while (b < t) {
+                int d = min(nChars - nextChar, t - b);
+                sb.getChars(b, b + d, cb, nextChar);
+                b += d;
+                nextChar += d;
+                if (nextChar >= nChars)
+                    flushBuffer();
+            }
+        } else
+            write(csq.toString());
+        return this;
+    }
+
+    /**
+     * Appends "true" or "false".
+     *
+     * @param  v  The boolean to append
+     * @return This writer
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter append(boolean v) throws IOException {
+        write(v ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Appends the decimal representation of an int, as {@link Integer#toString(int)} would,
+     * writing the digits straight into the buffer.
+     *
+     * @param  v  The int to append
+     * @return This writer
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter append(int v) throws IOException {
+        return appendPadded(v, 1);
+    }
+
+    /**
+     * Appends the decimal representation of a long, as {@link Long#toString(long)} would,
+     * writing the digits straight into the buffer.
+     *
+     * @param  v  The long to append
+     * @return This writer
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter append(long v) throws IOException {
+        return appendPadded(v, 1);
+    }
+
+    /**
+     * Appends the decimal representation of an int, left-padded with zeros to the given number of digits,
+     * e.g. <code>appendPadded(7, 3)</code> appends "007". The sign, if any, comes before the zeros.
+     *
+     * @param  v      The int to append
+     * @param  width  The minimal number of digits, between 1 and 19
+     * @return This writer
+     * @throws IllegalArgumentException If width is out of range
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter appendPadded(int v, int width) throws IOException {
+        return appendPadded((long) v, width);
+    }
+
+    /**
+     * Appends the decimal representation of a long, left-padded with zeros to the given number of digits,
+     * e.g. <code>appendPadded(7L, 3)</code> appends "007". The sign, if any, comes before the zeros.
+     *
+     * @param  v      The long to append
+     * @param  width  The minimal number of digits, between 1 and 19
+     * @return This writer
+     * @throws IllegalArgumentException If width is out of range
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter appendPadded(long v, int width) throws IOException {
+        DecimalUtils.checkWidth(width);
+        if (v == Long.MIN_VALUE) {  // can't be negated, and has 19 digits already
+            write("-9223372036854775808");
+            return this;
+        }
+        final boolean negative = v < 0;
+        if (negative)
+            v = -v;
+        final int length = (negative ? 1 : 0) + Math.max(width, DecimalUtils.digits(v));
+        ensureOpen();
+        if (nextChar + length > nChars)
+            flushBuffer();
+        if (length > nChars) {  // a tiny buffer, never the case with the default size
+            scratch.setLength(0);
+            append(DecimalUtils.appendPadded(scratch, negative ? -v : v, width));
+            return this;
+        }
+        if (negative)
+            cb[nextChar] = '-';
+        DecimalUtils.putDigits(cb, nextChar + length, v, length - (negative ? 1 : 0));
+        nextChar += length;
+        return this;
+    }
+
+    /**
+     * Appends a double with the shortest decimal that parses back to the same double, as
+     * {@link Double#toString(double)} does since JDK 19, see {@link DecimalUtils#append(StringBuilder, double)}.
+     * The decimal is rendered into a builder owned by this writer, then copied into the buffer.
+     *
+     * @param  v  The double to append
+     * @return This writer
+     * @throws IOException If an I/O error occurs
+     */
+    public UnsafeBufferedWriter append(double v) throws IOException {
+        scratch.setLength(0);
+        return append(DecimalUtils.append(scratch, v));
+    }
+
     /**
      * Writes a line separator.  The line separator string is defined by the
      * system property {@code line.separator}, and is not necessarily a single
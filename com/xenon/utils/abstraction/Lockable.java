@@ -0,0 +1,30 @@
+package com.xenon.utils.abstraction;
+
+/**
+ * Common surface of the spinning locks in {@link com.xenon.utils}, so that structs such as
+ * {@link com.xenon.collections.BlockingTorus} can be handed whichever suits their contention profile.
+ * None of the implementations are reentrant.
+ * @author Zenon
+ * @see com.xenon.utils.SpinLock
+ * @see com.xenon.utils.TicketLock
+ * @see com.xenon.utils.ClhLock
+ * @see com.xenon.utils.McsLock
+ */
+public interface Lockable {
+
+    /**
+     * Spins until it manages to get the lock.
+     */
+    void lock();
+
+    /**
+     * Tries to get the lock, without waiting.
+     * @return whether acquiring the lock succeeded
+     */
+    boolean tryLock();
+
+    /**
+     * Releases the lock. Must only be called by the thread holding it.
+     */
+    void unlock();
+}
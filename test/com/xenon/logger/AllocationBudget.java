@@ -0,0 +1,242 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogEvent;
+import com.xenon.logging.LogManager;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Allocation budget of the logging hot path: measures, with {@link com.sun.management.ThreadMXBean}, the bytes
+ * allocated per {@link BlockingLogger} call by the producer thread and by the logging daemon, after warm-up, and
+ * fails if any exceeds its budget. Calls go through the level methods, e.g. {@link BlockingLogger#info(String,
+ * Object)}, for every level, kind of argument and number of arguments: from none to three, each with its own
+ * overload, then four through the varargs one.
+ * Usage: <code>AllocationBudget [callsPerCase]</code>. Exits with 1 if a budget is exceeded, so it can gate a build.
+ * <p>
+ * Budgets:
+ * <ul>
+ *     <li>producer: one {@link LogEvent}, the object queued, plus the argument array the overloads of one to three
+ *     arguments build. Sizes are measured at startup, as they depend on the JVM's object layout.</li>
+ *     <li>daemon: nothing per event, formatting, coalescing and writing reuse their buffers. Only the file I/O
+ *     allocates, a few hundred bytes each time a buffer is written out, i.e. about 2 bytes per event here.</li>
+ * </ul>
+ * Arguments are boxed once, before measuring, and so is the array given to the varargs method: that's the caller's
+ * allocation, the same whatever the logger. Events are logged by windows small enough not to spill out of the queues, whose
+ * segments would be allocated, and the daemon is flushed between windows, outside the measurements of the
+ * producer. What a flush allocates on the daemon is measured apart and deducted.
+ * @author Zenon
+ */
+public class AllocationBudget {
+
+    private static final int WINDOW = 1 << 7;
+    /**
+     * Slack in bytes per call, for allocations done once in a while rather than per event, e.g. formatting a new
+     * second.
+     */
+    private static final double SLACK = 0.5;
+    /**
+     * Budget of the daemon in bytes per call, covering the file I/O. Anything allocated per event, even a single
+     * small object, exceeds it.
+     */
+    private static final double DAEMON_BUDGET = 4;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * An argument whose toString doesn't allocate, so that only the logger is measured.
+     */
+    private static final Object OBJECT = new Object(){
+        @Override
+        public String toString() {
+            return "object";
+        }
+    };
+
+    private static final Object[] ARGUMENTS = {1_000_000, 1_000_000_000_000L, 3.25, true, "text", OBJECT};
+    private static final String[] KINDS = {"int", "long", "double", "boolean", "String", "Object"};
+    /**
+     * Numbers of arguments measured, 4 being passed to the varargs method.
+     */
+    private static final int[] COUNTS = {1, 2, 3, 4};
+
+    public static void main(String[] args) throws Exception {
+        final int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+        Path dir = Files.createTempDirectory("allocation-budget");
+        LogManager.build(dir, "budget.txt");
+        LogManager.setCoalescing(false);
+        BlockingLogger logger = LogManager.getLogger();
+        logger.info("start");
+        LogManager.flush().join();
+        Thread daemon = findThread("Logging Thread");
+
+        final double eventSize = eventSize();
+        final double[] arraySizes = new double[COUNTS.length];
+        for (int i = 0; i < COUNTS.length; i++)
+            arraySizes[i] = COUNTS[i] < 4 ? arraySize(COUNTS[i]) : 0;   // the varargs array is the caller's
+        final double flushSize = flushSize(daemon);
+        System.out.printf("budgets: producer %.0f bytes per call (one LogEvent), plus %.0f to %.0f for the argument " +
+                        "array of 1 to 3 arguments, daemon %.0f (file I/O, %.0f bytes per flush deducted)%n",
+                eventSize, arraySizes[0], arraySizes[2], DAEMON_BUDGET, flushSize);
+
+        boolean ok = true;
+        for (int round = 0; round < 2; round++){     // the first round is the warm-up
+            boolean report = round == 1;
+            for (LogManager.Level level : LogManager.Level.values()){
+                ok &= check(logger, level, "text", new Object[0], eventSize, flushSize, calls, daemon, report);
+                for (int count = 0; count < COUNTS.length; count++){
+                    for (int kind = 0; kind < KINDS.length; kind++){
+                        Object[] arguments = new Object[COUNTS[count]];
+                        Arrays.fill(arguments, ARGUMENTS[kind]);
+                        ok &= check(logger, level, COUNTS[count] + " " + KINDS[kind], arguments,
+                                eventSize + arraySizes[count], flushSize, calls, daemon, report);
+                    }
+                }
+            }
+        }
+        System.out.println(ok ? "within budget" : "over budget");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Measures a case and prints it if asked to.
+     * @return false if the case is reported and over budget
+     */
+    private static boolean check(BlockingLogger logger, LogManager.Level level, String name, Object[] arguments,
+                                 double producerBudget, double flushSize, int calls, Thread daemon, boolean report){
+        long[] bytes = measure(logger, level, arguments, calls, daemon);
+        double producer = (double) bytes[0] / calls;
+        double consumer = (bytes[1] - flushSize * calls / WINDOW) / calls;
+        boolean pass = producer <= producerBudget + SLACK && consumer <= DAEMON_BUDGET + SLACK;
+        if (report)
+            System.out.printf("%-5s %-9s producer %7.2f B/call (budget %3.0f)  daemon %7.2f B/call  %s%n",
+                    level, name, producer, producerBudget, consumer, pass ? "ok" : "OVER BUDGET");
+        return pass || !report;
+    }
+
+    /**
+     * Logs the given number of events by windows.
+     * @return the bytes allocated by the producer and by the daemon
+     */
+    private static long[] measure(BlockingLogger logger, LogManager.Level level, Object[] arguments, int calls,
+                                  Thread daemon){
+        final String message = "allocation budget" + " {}".repeat(arguments.length);
+        long producer = 0;
+        long daemonStart = THREADS.getThreadAllocatedBytes(daemon.getId());
+        for (int done = 0; done < calls; done += WINDOW){
+            long start = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < WINDOW; i++)
+                call(logger, level, message, arguments);
+            producer += THREADS.getCurrentThreadAllocatedBytes() - start;
+            LogManager.flush().join();
+        }
+        return new long[]{producer, THREADS.getThreadAllocatedBytes(daemon.getId()) - daemonStart};
+    }
+
+    /**
+     * Calls the level method that an application would for this level and number of arguments.
+     */
+    private static void call(BlockingLogger logger, LogManager.Level level, String message, Object[] a){
+        switch (a.length){
+            case 0 -> {
+                switch (level){
+                    case DEBUG -> logger.debug(message);
+                    case INFO -> logger.info(message);
+                    case WARN -> logger.warn(message);
+                    case ERROR -> logger.error(message);
+                    case FATAL -> logger.fatal(message);
+                }
+            }
+            case 1 -> {
+                switch (level){
+                    case DEBUG -> logger.debug(message, a[0]);
+                    case INFO -> logger.info(message, a[0]);
+                    case WARN -> logger.warn(message, a[0]);
+                    case ERROR -> logger.error(message, a[0]);
+                    case FATAL -> logger.fatal(message, a[0]);
+                }
+            }
+            case 2 -> {
+                switch (level){
+                    case DEBUG -> logger.debug(message, a[0], a[1]);
+                    case INFO -> logger.info(message, a[0], a[1]);
+                    case WARN -> logger.warn(message, a[0], a[1]);
+                    case ERROR -> logger.error(message, a[0], a[1]);
+                    case FATAL -> logger.fatal(message, a[0], a[1]);
+                }
+            }
+            case 3 -> {
+                switch (level){
+                    case DEBUG -> logger.debug(message, a[0], a[1], a[2]);
+                    case INFO -> logger.info(message, a[0], a[1], a[2]);
+                    case WARN -> logger.warn(message, a[0], a[1], a[2]);
+                    case ERROR -> logger.error(message, a[0], a[1], a[2]);
+                    case FATAL -> logger.fatal(message, a[0], a[1], a[2]);
+                }
+            }
+            default -> {
+                switch (level){
+                    case DEBUG -> logger.debug(message, a);
+                    case INFO -> logger.info(message, a);
+                    case WARN -> logger.warn(message, a);
+                    case ERROR -> logger.error(message, a);
+                    case FATAL -> logger.fatal(message, a);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the size of a {@link LogEvent}, measured by allocating some
+     */
+    private static double eventSize(){
+        LogEvent[] events = new LogEvent[WINDOW];
+        long bytes = 0;
+        for (int round = 0; round < 16; round++){
+            long start = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < WINDOW; i++)
+                events[i] = new LogEvent();
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - start;
+        }
+        return (double) bytes / WINDOW;
+    }
+
+    /**
+     * @return the size of an argument array of the given length, measured by allocating some
+     */
+    private static double arraySize(int length){
+        Object[][] arrays = new Object[WINDOW][];
+        long bytes = 0;
+        for (int round = 0; round < 16; round++){
+            long start = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < WINDOW; i++)
+                arrays[i] = new Object[length];
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - start;
+        }
+        return (double) bytes / WINDOW;
+    }
+
+    /**
+     * @return the bytes allocated by the daemon per flush, measured on empty flushes
+     */
+    private static double flushSize(Thread daemon){
+        final int flushes = 1 << 12;
+        for (int i = 0; i < flushes; i++)    // warm-up
+            LogManager.flush().join();
+        long start = THREADS.getThreadAllocatedBytes(daemon.getId());
+        for (int i = 0; i < flushes; i++)
+            LogManager.flush().join();
+        return (double) (THREADS.getThreadAllocatedBytes(daemon.getId()) - start) / flushes;
+    }
+
+    private static Thread findThread(String name){
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.getName().equals(name))
+                return t;
+        throw new IllegalStateException("no thread named " + name);
+    }
+}
@@ -0,0 +1,73 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks that an argument whose <code>toString()</code> throws is written as a placeholder, and doesn't stop the
+ * events logged after it: formatted by the logging daemon first, then by the formatting pipeline.
+ * Usage: <code>ArgumentFailureCheck [events]</code>. Exits with 1 if the placeholder or a later event is missing,
+ * or if flushing doesn't complete in time.
+ * @author Zenon
+ */
+public class ArgumentFailureCheck {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        final int events = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Path dir = Files.createTempDirectory("argument-failure");
+        LogManager.build(dir, "check.txt");
+        BlockingLogger logger = LogManager.getLogger();
+
+        check("daemon", logger, dir.resolve("check.txt"), events);
+        LogManager.startFormatters(2);
+        check("pipeline", logger, dir.resolve("check.txt"), events);
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void check(String path, BlockingLogger logger, Path log, int events) throws Exception {
+        logger.info("{}: failing argument {}", path, new Failing());
+        for (int i = 0; i < events; i++)
+            logger.info("{}: after {}", path, i);
+        try {
+            LogManager.flush().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            report(path, "flush didn't complete within " + TIMEOUT_SECONDS + " s");
+            return;
+        }
+
+        String text = Files.readString(log);
+        String problem = null;
+        if (!text.contains(path + ": failing argument [toString() failed: java.lang.IllegalStateException: broken]"))
+            problem = "placeholder missing";
+        for (int i = 0; problem == null && i < events; i++)
+            if (!text.contains(path + ": after " + i + "\n"))
+                problem = "event " + i + " missing";
+        report(path, problem);
+    }
+
+    private static void report(String check, String problem){
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+
+    private static final class Failing {
+        @Override
+        public String toString() {
+            throw new IllegalStateException("broken");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogManager;
+
+/**
+ * Rough producer-side benchmark of the caller location capture.
+ * Compares the time spent in {@link BlockingLogger#info(String)} with the default pattern and with a pattern
+ * asking for <code>%C.%M:%L</code>. Not JMH, so only the order of magnitude is meaningful.
+ *
+ * @author Zenon
+ */
+public class CallerLocationBenchmark {
+
+    private static final int WARMUP = 200_000, ITERATIONS = 2_000_000;
+
+    public static void main(String[] args) {
+        BlockingLogger logger = LogManager.getLogger();
+
+        LogManager.setPattern("<%d> [%t/%p] : %m");
+        double plain = run(logger);
+
+        LogManager.setPattern("<%d> [%t/%p] %C.%M:%L : %m");
+        double located = run(logger);
+
+        System.out.printf("without location: %.1f ns/op%n", plain);
+        System.out.printf("with location:    %.1f ns/op%n", located);
+        System.out.printf("overhead:         %.1f ns/op%n", located - plain);
+    }
+
+    private static double run(BlockingLogger logger){
+        for (int i = 0; i < WARMUP; i++)
+            logger.info("benchmark");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            logger.info("benchmark");    // always the same call site, so every call but the first hits the cache
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
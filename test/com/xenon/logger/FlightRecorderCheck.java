@@ -0,0 +1,132 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.FlightRecorder;
+import com.xenon.logging.LogManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@link FlightRecorder}, registered with a file level of INFO, so that DEBUG events only reach the log file
+ * through its dumps:
+ * <ul>
+ *     <li>an ERROR dumps the DEBUG events recorded before it, oldest first, between a header and a footer;</li>
+ *     <li>{@link FlightRecorder#dump()} dumps the events recorded since the previous dump, and nothing if there is
+ *     none;</li>
+ *     <li>once more events than the capacity were recorded, a dump holds the last ones only, and no event is ever
+ *     dumped twice.</li>
+ * </ul>
+ * The log is flushed before each ERROR, which overtakes the events queued before it.
+ * Usage: <code>FlightRecorderCheck</code>. Exits with 1 if the log file differs from what's expected.
+ * @author Zenon
+ */
+public class FlightRecorderCheck {
+
+    private static final int CAPACITY = 8;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("flight-recorder");
+        Path log = dir.resolve("check.txt");
+        LogManager.build(dir, "check.txt");
+        LogManager.setFileLevel(LogManager.Level.INFO);
+        FlightRecorder recorder = FlightRecorder.build(CAPACITY, LogManager.Level.ERROR);
+        LogManager.setAppenders(recorder);
+        BlockingLogger logger = LogManager.getLogger();
+        List<String> expected = new ArrayList<>();
+
+        // an ERROR dumps what was recorded before it
+        debug(logger, 0, 5);
+        logger.error("first error");
+        flush();
+        expected.add("first error");
+        dumped(expected, "context of the ERROR above", 0, 5);
+        check("dump on ERROR", log, expected);
+
+        // dump() dumps what was recorded since, then nothing
+        debug(logger, 5, 8);
+        recorder.dump().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        dumped(expected, "dump requested", 5, 8);
+        recorder.dump().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        check("dump on dump()", log, expected);
+
+        // the ring wraps: the last CAPACITY events only, none of the ones already dumped
+        debug(logger, 8, 8 + 3 * CAPACITY + 3);
+        logger.error("second error");
+        flush();
+        expected.add("second error");
+        dumped(expected, "context of the ERROR above", 8 + 2 * CAPACITY + 3, 8 + 3 * CAPACITY + 3);
+        check("dump after wrapping", log, expected);
+
+        // a few events after a dump, then a wrap: still the last CAPACITY events only
+        debug(logger, 100, 103);
+        recorder.dump().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        dumped(expected, "dump requested", 100, 103);
+        debug(logger, 103, 103 + CAPACITY + 2);
+        recorder.dump().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        dumped(expected, "dump requested", 105, 103 + CAPACITY + 2);
+        logger.info("not dumped");
+        flush();
+        logger.error("third error");    // nothing recorded since the last dump
+        flush();
+        expected.add("not dumped");
+        expected.add("third error");
+        check("no duplicates", log, expected);
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Logs DEBUG events from included to excluded, then flushes so that they are recorded before what follows.
+     */
+    private static void debug(BlockingLogger logger, int from, int to) throws Exception {
+        for (int i = from; i < to; i++)
+            logger.debug("debug {}", i);
+        flush();
+    }
+
+    private static void flush() throws Exception {
+        LogManager.flush().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds the messages of a dump of the DEBUG events from included to excluded.
+     */
+    private static void dumped(List<String> expected, String reason, int from, int to){
+        expected.add("flight recorder: " + reason + ", " + (to - from) + " events:");
+        for (int i = from; i < to; i++)
+            expected.add("debug " + i);
+        expected.add("flight recorder: end of dump");
+    }
+
+    /**
+     * Compares the messages of the log file, in order, with the expected ones.
+     */
+    private static void check(String check, Path log, List<String> expected) throws Exception {
+        List<String> actual = new ArrayList<>();
+        for (String line : Files.readAllLines(log)){
+            int start = line.indexOf("] : ");
+            if (start >= 0)
+                actual.add(line.substring(start + 4));
+        }
+        String problem = null;
+        for (int i = 0; problem == null && i < Math.max(actual.size(), expected.size()); i++){
+            String a = i < actual.size() ? actual.get(i) : "nothing";
+            String e = i < expected.size() ? expected.get(i) : "nothing";
+            if (!a.equals(e))
+                problem = "message " + i + " is \"" + a + "\", expected \"" + e + "\"";
+        }
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+}
@@ -0,0 +1,97 @@
+package test.com.xenon.logger;
+
+/**
+ * Log-linear histogram of nanosecond latencies, in the spirit of HdrHistogram: values are bucketed by power of 2,
+ * each power being split into 64 linear sub-buckets, so percentiles are within about 1.6% of the real value
+ * whatever the magnitude, for a fixed footprint of 4096 counters.
+ * Not thread-safe: one histogram per thread, merged at the end with {@link #add(LatencyHistogram)}.
+ *
+ * @author Zenon
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 6, SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total, max;
+
+    /**
+     * Records a value.
+     * @param nanos the latency, negative values count as 0
+     */
+    public void record(long nanos){
+        if (nanos < 0)
+            nanos = 0;
+        counts[index(nanos)]++;
+        total++;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    /**
+     * Adds every value recorded by another histogram.
+     * @param other the other histogram
+     */
+    public void add(LatencyHistogram other){
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long count(){
+        return total;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, 0 if nothing was recorded
+     */
+    public long percentile(double percentile){
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * @return the maximum recorded value
+     */
+    public long max(){
+        return max;
+    }
+
+    /**
+     * Values below 64 have a bucket each, then every power of 2 gets 64 buckets.
+     */
+    private static int index(long v){
+        if (v < SUB_BUCKETS)
+            return (int) v;
+        int power = 63 - Long.numberOfLeadingZeros(v);     // >= SUB_BITS
+        int sub = (int) (v >>> (power - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (power - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index){
+        if (index < SUB_BUCKETS)
+            return index;
+        int power = index / SUB_BUCKETS + SUB_BITS - 1, sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (power - SUB_BITS)) - 1;
+    }
+
+    /**
+     * @return a one-line summary, in microseconds
+     */
+    public String summary(){
+        return String.format("n=%d p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f (us)", total,
+                percentile(50) / 1e3, percentile(90) / 1e3, percentile(99) / 1e3, percentile(99.9) / 1e3,
+                percentile(99.99) / 1e3, max / 1e3);
+    }
+}
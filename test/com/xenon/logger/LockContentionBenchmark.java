@@ -0,0 +1,171 @@
+package test.com.xenon.logger;
+
+import com.xenon.collections.BlockingTorus;
+import com.xenon.utils.ClhLock;
+import com.xenon.utils.McsLock;
+import com.xenon.utils.SpinLock;
+import com.xenon.utils.TicketLock;
+import com.xenon.utils.abstraction.Lockable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Contention benchmark of the {@link Lockable} implementations, each guarding a {@link BlockingTorus}.
+ * Every thread adds to the same torus for a fixed duration; throughput is the number of adds per second,
+ * fairness the ratio between the slowest and the fastest thread. A second round mixes both ways of taking the lock:
+ * half the threads call {@link BlockingTorus#add(Object)}, the other half retry {@link BlockingTorus#tryAdd(Object)}
+ * until it succeeds.
+ * Usage: <code>LockContentionBenchmark [millisPerRun] [maxThreads]</code>.
+ * <p>
+ * Each lock is also checked, through a wrapper recording who holds it: exits with 1 if two threads ever held a
+ * lock at once, if an acquisition was lost, or if the torus doesn't end up full, holding as many elements as its
+ * capacity.
+ *
+ * @author Zenon
+ */
+public class LockContentionBenchmark {
+
+    private static final int CAPACITY = 1024;
+
+    private static boolean failed;
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        System.out.printf("%-12s %8s %8s %14s %10s%n", "lock", "threads", "tryAdd", "adds/s", "fairness");
+        for (int threads = 1; threads <= maxThreads; threads <<= 1)
+            runAll(threads, 0, millis);
+        for (int threads = 2; threads <= maxThreads; threads <<= 1)
+            runAll(threads, threads / 2, millis);
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static void runAll(int threads, int tryAdders, long millis) throws InterruptedException {
+        run("SpinLock", SpinLock::create, threads, tryAdders, millis);
+        run("TicketLock", TicketLock::create, threads, tryAdders, millis);
+        run("ClhLock", ClhLock::create, threads, tryAdders, millis);
+        run("McsLock", McsLock::create, threads, tryAdders, millis);
+        run("McsLock(100)", () -> McsLock.adaptive(100), threads, tryAdders, millis);
+    }
+
+    /**
+     * @param tryAdders the number of threads adding with {@link BlockingTorus#tryAdd(Object)}, the others calling
+     *                  {@link BlockingTorus#add(Object)}
+     */
+    private static void run(String name, Supplier<Lockable> lock, int threads, int tryAdders, long millis)
+            throws InterruptedException {
+        CheckedLock checked = new CheckedLock(lock.get());
+        BlockingTorus<Object> torus = BlockingTorus.build(CAPACITY, checked);
+        Object element = new Object();
+        long[] counts = new long[threads];
+        LongAdder total = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + millis * 1_000_000L + 50_000_000L;
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++){
+            final int id = i;
+            final boolean tries = i < tryAdders;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0;
+                while ((n & 0xFF) != 0 || System.nanoTime() < deadline){
+                    if (tries){
+                        if (!torus.tryAdd(element))
+                            continue;
+                    } else
+                        torus.add(element);
+                    n++;
+                }
+                counts[id] = n;
+                total.add(n);
+            });
+            workers[i].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : workers)
+            t.join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long min = Long.MAX_VALUE, max = 0;
+        for (long c : counts){
+            min = Math.min(min, c);
+            max = Math.max(max, c);
+        }
+        System.out.printf("%-12s %8d %8d %14.0f %10.2f%n", name, threads, tryAdders, total.sum() / seconds,
+                (double) min / max);
+        check(name, threads, tryAdders, checked, torus, total.sum());
+    }
+
+    /**
+     * Checks the run: every add took the lock alone, and the torus is full.
+     */
+    private static void check(String name, int threads, int tryAdders, CheckedLock lock, BlockingTorus<Object> torus,
+                              long adds){
+        String problem = null;
+        if (lock.overlaps > 0)
+            problem = lock.overlaps + " overlapping acquisitions";
+        else if (lock.acquisitions != adds)
+            problem = (adds - lock.acquisitions) + " acquisitions lost out of " + adds;
+        else {
+            long[] held = new long[1];
+            torus.consumeAll(e -> held[0]++);
+            if (held[0] != Math.min(adds, CAPACITY))
+                problem = "the torus holds " + held[0] + " elements, expected " + Math.min(adds, CAPACITY);
+        }
+        if (problem != null){
+            failed = true;
+            System.out.printf("%-12s %8d %8d FAILED: %s%n", name, threads, tryAdders, problem);
+        }
+    }
+
+    /**
+     * Records the acquisitions of a lock with plain fields, only consistent if the lock is exclusive.
+     */
+    private static final class CheckedLock implements Lockable {
+        private final Lockable lock;
+        private Thread owner;
+        long acquisitions, overlaps;
+
+        CheckedLock(Lockable lock){
+            this.lock = lock;
+        }
+
+        @Override
+        public void lock() {
+            lock.lock();
+            acquired();
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!lock.tryLock())
+                return false;
+            acquired();
+            return true;
+        }
+
+        private void acquired(){
+            if (owner != null)
+                overlaps++;
+            owner = Thread.currentThread();
+            acquisitions++;
+        }
+
+        @Override
+        public void unlock() {
+            if (owner != Thread.currentThread())    // another thread acquired it meanwhile
+                overlaps++;
+            owner = null;
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogIndexReader;
+import com.xenon.logging.LogManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks {@link LogIndexReader} queries against what was logged with {@link LogManager#enableIndex(int)}:
+ * multi-line messages, non-ASCII text, lines long enough to be wrapped, every level, and time ranges.
+ * Usage: <code>LogIndexCheck [events]</code>. Exits with 1 if a query misses, adds or alters an event.
+ * @author Zenon
+ */
+public class LogIndexCheck {
+
+    private static final String[] MESSAGES = {
+            "plain {}",
+            "multi\nline\nmessage {}",
+            "non-ASCII é ß 日本語 🙂 {}",
+            "long " + "🙂é".repeat(100) + " {}",    // wrapped, possibly in between a surrogate pair
+            "trailing line feed {}\n"
+    };
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        final int events = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Path dir = Files.createTempDirectory("log-index");
+        LogManager.build(dir, "indexed.txt");
+        LogManager.enableIndex(16);
+        BlockingLogger logger = LogManager.getLogger();
+        LogManager.Level[] levels = LogManager.Level.values();
+
+        List<String> messages = new ArrayList<>();
+        List<LogManager.Level> eventLevels = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < events; i++){
+            String template = MESSAGES[i % MESSAGES.length];
+            LogManager.Level level = levels[i / MESSAGES.length % levels.length];
+            logger.log(template, level, i);
+            messages.add(template.replace("{}", Integer.toString(i)));
+            eventLevels.add(level);
+        }
+        LogManager.flush().join();
+        long end = System.currentTimeMillis();
+
+        LogIndexReader reader = new LogIndexReader(dir.resolve("indexed.txt"));
+        for (LogManager.Level min : levels){
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < events; i++)
+                if (eventLevels.get(i).compareTo(min) >= 0)
+                    expected.add(messages.get(i));
+            check("level " + min + " and above", reader.query(start, end, min), expected);
+        }
+        check("before the events", reader.query(0, start - 1, LogManager.Level.DEBUG), List.of());
+        check("after the events", reader.query(end + 1, Long.MAX_VALUE, LogManager.Level.DEBUG), List.of());
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Compares the events found with the messages expected, the events being formatted lines. ERROR and FATAL
+     * events overtake the others, so only the order within a lane is checked.
+     */
+    private static void check(String query, List<String> found, List<String> expected){
+        List<String> unmatched = new ArrayList<>(expected);
+        String problem = null;
+        for (String event : found){
+            String text = event.replace("\n\t", "");    // undo the wrapping
+            String match = null;
+            for (String m : unmatched)
+                if (text.endsWith(" : " + m)){
+                    match = m;
+                    break;
+                }
+            if (match == null){
+                problem = "unexpected or altered event: " + event;
+                break;
+            }
+            unmatched.remove(match);
+        }
+        if (problem == null && !unmatched.isEmpty())
+            problem = unmatched.size() + " events missing, e.g. " + unmatched.get(0);
+        if (problem == null && !inLaneOrder(found))
+            problem = "events out of order";
+        if (problem != null){
+            failures++;
+            System.out.println(query + ": " + problem);
+        } else
+            System.out.println(query + ": " + found.size() + " events, ok");
+    }
+
+    /**
+     * @return whether the events of each lane, ERROR and above or below ERROR, come in the order they were logged
+     */
+    private static boolean inLaneOrder(List<String> found){
+        int lastPriority = -1, lastMain = -1;
+        for (String event : found){
+            String text = event.replace("\n\t", "");
+            int n = number(text.strip());
+            boolean priority = text.contains("/ERROR]") || text.contains("/FATAL]");
+            if (priority){
+                if (n < lastPriority)
+                    return false;
+                lastPriority = n;
+            } else {
+                if (n < lastMain)
+                    return false;
+                lastMain = n;
+            }
+        }
+        return true;
+    }
+
+    private static int number(String text){
+        int i = text.length();
+        while (i > 0 && Character.isDigit(text.charAt(i - 1)))
+            i--;
+        return Integer.parseInt(text.substring(i));
+    }
+}
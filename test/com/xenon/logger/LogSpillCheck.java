@@ -0,0 +1,151 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.LogEvent;
+import com.xenon.logging.LogManager;
+import com.xenon.logging.LogSpill;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks {@link LogSpill}:
+ * <ul>
+ *     <li>filling the spill until a write is refused, then replaying it by batches: every event comes back once, in
+ *     order, with its time, thread, level and message, templates formatted and throwable messages appended;</li>
+ *     <li>once everything is replayed, the spill is empty and writing starts back at the beginning of the file: the
+ *     same number of events fits again;</li>
+ *     <li>events written between two partial replays come after those already in the spill.</li>
+ * </ul>
+ * Usage: <code>LogSpillCheck [capacity]</code>. Exits with 1 if an event is lost, duplicated, reordered or altered.
+ * @author Zenon
+ */
+public class LogSpillCheck {
+
+    private static final LogManager.Level[] LEVELS = LogManager.Level.values();
+    private static final int BATCH = 3;
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        final int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+        Path file = Files.createTempFile("log-spill", ".bin");
+        LogSpill spill = new LogSpill(file, capacity);
+
+        int filled = fillAndReplay("fill and replay", spill);
+        int refilled = fillAndReplay("refill after replay", spill);
+        report("writing starts over",
+                filled == refilled ? null : refilled + " events fit after replaying, " + filled + " before");
+        interleaved(spill);
+
+        Files.deleteIfExists(file);
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Builds event i: a template every other event, a throwable every 7 events.
+     */
+    private static LogEvent event(LogEvent e, int i){
+        Throwable t = i % 7 == 0 ? new IllegalStateException(" failed " + i) : null;
+        if (i % 2 == 0)
+            e.construct(i, "producer-" + i % 3, "spilled {} of {}", new Object[]{i, "spill"}, t,
+                    LEVELS[i % LEVELS.length], null);
+        else
+            e.construct(i, "producer-" + i % 3, "spilled " + i, t, LEVELS[i % LEVELS.length], null);
+        return e;
+    }
+
+    /**
+     * @return null if the replayed event is event i, otherwise what differs
+     */
+    private static String verify(LogEvent replayed, int i){
+        String msg = i % 2 == 0 ? "spilled " + i + " of spill" : "spilled " + i;
+        if (i % 7 == 0)
+            msg += " failed " + i;
+        if (replayed.time != i)
+            return "replayed event " + replayed.time + ", expected " + i;
+        if (!("producer-" + i % 3).equals(replayed.threadName) || replayed.lvl != LEVELS[i % LEVELS.length]
+                || !msg.equals(replayed.getMessage()))
+            return "event " + i + " replayed as " + replayed.threadName + "/" + replayed.lvl + " \""
+                    + replayed.getMessage() + "\", expected producer-" + i % 3 + "/" + LEVELS[i % LEVELS.length]
+                    + " \"" + msg + "\"";
+        return null;
+    }
+
+    /**
+     * Writes events until the spill is full, then replays them by batches.
+     * @return the number of events written
+     */
+    private static int fillAndReplay(String check, LogSpill spill){
+        LogEvent e = new LogEvent();
+        int written = 0;
+        while (spill.write(event(e, written)))
+            written++;
+        String problem = null;
+        if (written == 0)
+            problem = "no event fits";
+        else if (spill.write(event(e, 0)))
+            problem = "written in a full spill";
+        else if (spill.isEmpty())
+            problem = "empty once filled";
+
+        int[] next = {0};
+        String[] replayProblem = {null};
+        for (int n = BATCH; n == BATCH; ){
+            n = spill.replay(r -> {
+                if (replayProblem[0] == null)
+                    replayProblem[0] = verify(r, next[0]);
+                next[0]++;
+            }, BATCH);
+            if (n > BATCH)
+                replayProblem[0] = n + " events replayed by a batch of " + BATCH;
+        }
+        if (problem == null)
+            problem = replayProblem[0];
+        if (problem == null && next[0] != written)
+            problem = next[0] + " events replayed out of " + written;
+        if (problem == null && !spill.isEmpty())
+            problem = "not empty once replayed";
+        report(check + ", " + written + " events", problem);
+        return written;
+    }
+
+    /**
+     * Writes 10 events, replays 4, writes 10 more, then replays everything.
+     */
+    private static void interleaved(LogSpill spill){
+        LogEvent e = new LogEvent();
+        int[] next = {0};
+        String[] problem = {null};
+        for (int i = 0; i < 10; i++)
+            spill.write(event(e, i));
+        spill.replay(r -> {
+            if (problem[0] == null)
+                problem[0] = verify(r, next[0]);
+            next[0]++;
+        }, 4);
+        for (int i = 10; i < 20; i++)
+            spill.write(event(e, i));
+        if (problem[0] == null && spill.isEmpty())
+            problem[0] = "empty with events left to replay";
+        spill.replay(r -> {
+            if (problem[0] == null)
+                problem[0] = verify(r, next[0]);
+            next[0]++;
+        }, Integer.MAX_VALUE);
+        if (problem[0] == null && next[0] != 20)
+            problem[0] = next[0] + " events replayed out of 20";
+        if (problem[0] == null && !spill.isEmpty())
+            problem[0] = "not empty once replayed";
+        report("writes between replays", problem[0]);
+    }
+
+    private static void report(String check, String problem){
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+}
@@ -0,0 +1,97 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.LogTail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks {@link LogTail} on a growing file, across rolls and truncations, and when resuming from a saved position.
+ * Usage: <code>LogTailCheck</code>. Exits with 1 if a byte is lost or shipped twice.
+ * @author Zenon
+ */
+public class LogTailCheck {
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("log-tail");
+        Path log = dir.resolve("log.txt");
+        ByteArrayOutputStream shipped = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(shipped);
+
+        LogTail tail = new LogTail(log);
+        tail.ship(target);      // no file yet
+        append(log, "a1\n");
+        append(log, "a2\n");
+        tail.ship(target);
+        expect("growing file", shipped, "a1\na2\n");
+
+        // rolled: the writer appends to the old file once renamed, before reopening the path
+        Files.move(log, dir.resolve("log.1.txt"));
+        append(dir.resolve("log.1.txt"), "a3\n");
+        append(log, "b1\n");
+        tail.ship(target);
+        append(dir.resolve("log.1.txt"), "a4\n");
+        tail.ship(target);
+        tail.ship(target);
+        expect("roll", shipped, "a1\na2\na3\na4\nb1\n");
+
+        append(log, "b2\n");
+        tail.ship(target);
+        Files.writeString(log, "c1\n");     // truncated, same file
+        tail.ship(target);
+        expect("truncation", shipped, "a1\na2\na3\na4\nb1\nb2\nc1\n");
+
+        // resumed from a saved position, after the log was rolled meanwhile
+        append(log, "c2\n");
+        tail.ship(target);
+        String id = tail.fileId();
+        long offset = tail.offset();
+        tail.close();
+        append(log, "c3\n");
+        Files.move(log, dir.resolve("log.2.txt"));
+        append(log, "d1\n");
+        shipped.reset();
+        tail = new LogTail(log, id, offset);
+        for (int i = 0; i < 3; i++)
+            tail.ship(target);
+        expect("resume after a roll", shipped, "c3\nd1\n");
+
+        // resumed from a saved position whose file is gone
+        id = tail.fileId();
+        offset = tail.offset();
+        tail.close();
+        Files.move(log, dir.resolve("log.3.txt"));
+        append(log, "e1\n");      // before deleting, lest the new file reuses the old one's key
+        Files.delete(dir.resolve("log.3.txt"));
+        shipped.reset();
+        tail = new LogTail(log, id, offset);
+        tail.ship(target);
+        expect("resume, file gone", shipped, "e1\n");
+        tail.close();
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void expect(String check, ByteArrayOutputStream shipped, String expected){
+        String actual = shipped.toString(StandardCharsets.UTF_8);
+        if (!actual.equals(expected)){
+            failures++;
+            System.out.printf("%s: expected %s, shipped %s%n", check, expected.replace("\n", "|"),
+                    actual.replace("\n", "|"));
+        } else
+            System.out.println(check + ": ok");
+    }
+}
@@ -0,0 +1,184 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogLayout;
+import com.xenon.logging.LogManager;
+import com.xenon.logging.NetworkAppender;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process collector checking {@link NetworkAppender} end to end, over the loopback interface.
+ * Usage: <code>LoopbackCollector [TCP|UDP] [SYSLOG|LENGTH_PREFIXED] [events]</code>.
+ * <p>
+ * Events are first sent to a running collector, and must all arrive intact. The collector is then stopped while
+ * events keep coming, and restarted: the appender must notice the collector is gone, reconnect and send what it
+ * buffered meanwhile. Exits with 1 if a frame is corrupt, or over TCP if an event is missing or duplicated, in
+ * either phase: over UDP, the collector's socket buffer overflows under bursts and events are lost by design.
+ * @author Zenon
+ */
+public class LoopbackCollector {
+
+    private static final String PREFIX = "loopback ", OUTAGE = "during outage ", RESTART = "after restart ";
+
+    private final NetworkAppender.Transport transport;
+    private final NetworkAppender.Framing framing;
+    private final AtomicLong received = new AtomicLong(), corrupt = new AtomicLong();
+    /**
+     * Events logged during the outage, and after the restart, received.
+     */
+    private final AtomicLong outage = new AtomicLong(), restart = new AtomicLong();
+    private volatile ServerSocketChannel server;
+    private volatile SocketChannel socket;
+    private volatile DatagramChannel datagrams;
+    private Thread thread;
+
+    private LoopbackCollector(NetworkAppender.Transport transport, NetworkAppender.Framing framing){
+        this.transport = transport;
+        this.framing = framing;
+    }
+
+    public static void main(String[] args) throws Exception {
+        NetworkAppender.Transport transport = NetworkAppender.Transport.valueOf(args.length > 0 ? args[0] : "TCP");
+        NetworkAppender.Framing framing = NetworkAppender.Framing.valueOf(args.length > 1 ? args[1] : "SYSLOG");
+        int events = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        LoopbackCollector collector = new LoopbackCollector(transport, framing);
+        InetSocketAddress address = collector.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        NetworkAppender appender = NetworkAppender.build(address, transport, framing, new LogLayout("[%t/%p] %m"), 1 << 20);
+        LogManager.build(Path.of("loopback"), "loopback.txt");
+        LogManager.setCoalescing(false);
+        LogManager.setAppenders(appender);
+        BlockingLogger logger = LogManager.getLogger();
+
+        for (int i = 0; i < events; i++)
+            logger.info(PREFIX + i);
+        LogManager.flush().join();
+        boolean complete = collector.await(events, 5000);
+        System.out.printf("%s %s, collector up: sent=%d received=%d dropped=%d%n", transport, framing, events,
+                collector.received.get(), appender.dropped());
+
+        collector.stop();
+        final int outage = events / 10, restart = 20;
+        for (int i = 0; i < outage; i++)
+            logger.info(PREFIX + OUTAGE + i);
+        LogManager.flush().join();
+        collector.start(address);
+        for (int i = 0; i < restart; i++){     // the appender only retries when events come
+            logger.info(PREFIX + RESTART + i);
+            Thread.sleep(100);
+        }
+        LogManager.flush().join();
+        collector.await(events + outage + restart, 5000);
+        System.out.printf("collector restarted: logged during outage=%d received=%d, after restart=%d received=%d, " +
+                "dropped=%d%n", outage, collector.outage.get(), restart, collector.restart.get(), appender.dropped());
+        System.out.println("corrupt frames: " + collector.corrupt.get());
+        complete &= collector.received.get() == events + outage + restart
+                && collector.outage.get() == outage && collector.restart.get() == restart;
+
+        collector.stop();
+        System.exit((complete || transport == NetworkAppender.Transport.UDP) && collector.corrupt.get() == 0 ? 0 : 1);
+    }
+
+    private InetSocketAddress start(InetSocketAddress address) throws IOException {
+        if (transport == NetworkAppender.Transport.TCP){
+            server = ServerSocketChannel.open();
+            server.bind(address);
+            thread = new Thread(this::acceptLoop, "collector");
+            thread.start();
+            return (InetSocketAddress) server.getLocalAddress();
+        }
+        datagrams = DatagramChannel.open();
+        datagrams.bind(address);
+        thread = new Thread(this::datagramLoop, "collector");
+        thread.start();
+        return (InetSocketAddress) datagrams.getLocalAddress();
+    }
+
+    private void stop() throws Exception {
+        if (server != null)
+            server.close();
+        if (socket != null)
+            socket.close();
+        if (datagrams != null)
+            datagrams.close();
+        thread.join();
+    }
+
+    private boolean await(long count, long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        while (received.get() < count && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        return received.get() >= count;
+    }
+
+    private void acceptLoop(){
+        try (SocketChannel socket = server.accept()){
+            this.socket = socket;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socket)));
+            while (!Thread.currentThread().isInterrupted() && server.isOpen()){
+                int length = framing == NetworkAppender.Framing.LENGTH_PREFIXED ? in.readInt() : octetCount(in);
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                check(new String(frame, StandardCharsets.UTF_8));
+            }
+        } catch (EOFException | ClosedChannelException e) {
+            // stopped
+        } catch (IOException e) {
+            if (socket != null && socket.isOpen())
+                e.printStackTrace();
+        }
+    }
+
+    private void datagramLoop(){
+        ByteBuffer buffer = ByteBuffer.allocate(NetworkAppender.MAX_DATAGRAM);
+        try {
+            while (true){
+                buffer.clear();
+                datagrams.receive(buffer);
+                buffer.flip();
+                if (framing == NetworkAppender.Framing.LENGTH_PREFIXED && buffer.getInt() != buffer.remaining())
+                    corrupt.incrementAndGet();
+                check(StandardCharsets.UTF_8.decode(buffer).toString());
+            }
+        } catch (IOException e) {
+            // stopped
+        }
+    }
+
+    private static int octetCount(InputStream in) throws IOException {
+        int length = 0;
+        for (int b; (b = in.read()) != ' ';){
+            if (b < 0)
+                throw new EOFException();
+            length = length * 10 + (b - '0');
+        }
+        return length;
+    }
+
+    private void check(String frame){
+        boolean ok = frame.contains(PREFIX)
+                && (framing != NetworkAppender.Framing.SYSLOG || frame.startsWith("<14>1 "));
+        (ok ? received : corrupt).incrementAndGet();
+        if (frame.contains(OUTAGE))
+            outage.incrementAndGet();
+        else if (frame.contains(RESTART))
+            restart.incrementAndGet();
+    }
+}
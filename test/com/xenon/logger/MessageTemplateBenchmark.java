@@ -0,0 +1,37 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.MessageTemplate;
+
+/**
+ * Rough consumer-side benchmark of the message template cache.
+ * Compares formatting a templated line by parsing its template every time, as a scan-and-replace formatter would,
+ * with going through {@link MessageTemplate#of(String)}. Not JMH, so only the order of magnitude is meaningful.
+ *
+ * @author Zenon
+ */
+public class MessageTemplateBenchmark {
+
+    private static final int WARMUP = 200_000, ITERATIONS = 5_000_000;
+    private static final String TEMPLATE = "request {} from {} served in {} ms with status {}";
+
+    public static void main(String[] args) {
+        Object[] arguments = {"GET /index.html", "10.0.0.12", 42, 200};
+        StringBuilder b = new StringBuilder();
+
+        double parsed = run(() -> new MessageTemplate(TEMPLATE).format(arguments, b).setLength(0));
+        double cached = run(() -> MessageTemplate.of(TEMPLATE).format(arguments, b).setLength(0));
+
+        System.out.printf("parsed each time: %.1f ns/op%n", parsed);
+        System.out.printf("cached:           %.1f ns/op%n", cached);
+    }
+
+    private static double run(Runnable format){
+        for (int i = 0; i < WARMUP; i++)
+            format.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            format.run();
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
@@ -0,0 +1,140 @@
+package test.com.xenon.logger;
+
+import com.xenon.utils.DecimalUtils;
+import com.xenon.utils.UnsafeBufferedWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+/**
+ * Checks the number appends of {@link DecimalUtils} and {@link UnsafeBufferedWriter} against the JDK: longs against
+ * {@link Long#toString(long)} and <code>String.format("%0nd")</code>, doubles against {@link Double#toString(double)}.
+ * Usage: <code>NumberAppendCheck [doubles]</code>. Exits with 1 on a mismatch.
+ * <p>
+ * Before JDK 19, {@link Double#toString(double)} sometimes writes more digits than needed, or not the closest
+ * decimal. Where the outputs differ, the appended double must parse back to the same double, have no more digits than
+ * the JDK's, and be at least as close to the exact value if it has as many. Since JDK 19, a double whose shortest
+ * decimal has a single digit gets the closest one of 2 digits instead, e.g. 9.9E-324 rather than 1.0E-323: one digit
+ * more than the JDK's is then allowed, if closer. Such differences are counted.
+ * @author Zenon
+ */
+public class NumberAppendCheck {
+
+    private static final double[] EDGES = {
+            0.0, -0.0, 1.0, -1.0, 0.1, 0.2, 0.3, 1.0 / 3, 2.0 / 3, 100.0, 1e7, 9999999.0, 9999999.999, 1e-3, 9.99e-4,
+            0.001, 1e23, 2e23, 8.41e21, 5e-324, 1e-323, 1.5e-323, Double.MIN_VALUE, Double.MIN_NORMAL,
+            Double.MAX_VALUE, Math.nextDown(Double.MIN_NORMAL), Math.PI, Math.E, 123456.789, 2.82879384806159E17,
+            1.0E16, 1.0E17, 9.007199254740992E15, 4.8726570057E288, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY
+    };
+
+    private static int failures, differences;
+
+    public static void main(String[] args) throws IOException {
+        final int doubles = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        SplittableRandom random = new SplittableRandom(42);
+
+        checkLong(0);
+        checkLong(Long.MIN_VALUE);
+        checkLong(Long.MAX_VALUE);
+        checkLong(Integer.MIN_VALUE);
+        for (long p = 1; p > 0 && p < Long.MAX_VALUE / 10; p *= 10)
+            for (long v : new long[]{p - 1, p, p + 1, -p + 1, -p, -p - 1})
+                checkLong(v);
+        for (int i = 0; i < 100_000; i++)
+            checkLong(random.nextLong() >> random.nextInt(64));
+
+        for (double v : EDGES)
+            checkDouble(v);
+        for (int e = -1074; e <= 1023; e++){
+            double p = Math.scalb(1.0, e);
+            checkDouble(p);
+            checkDouble(Math.nextUp(p));
+            checkDouble(Math.nextDown(p));
+        }
+        for (int e = -324; e <= 308; e++)
+            checkDouble(Double.parseDouble("1e" + e));
+        for (int i = 0; i < doubles; i++){
+            checkDouble(Double.longBitsToDouble(random.nextLong()));      // any magnitude
+            checkDouble(random.nextDouble(-1e7, 1e7));                  // plain notation
+            checkDouble(random.nextInt(1_000_000) / 1000.0);            // few digits
+        }
+
+        System.out.println(differences + " doubles shorter or closer than Double.toString of this JDK");
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void checkLong(long v) throws IOException {
+        String expected = Long.toString(v);
+        expect("append(" + v + ")", DecimalUtils.append(new StringBuilder(), v).toString(), expected);
+        expect("writer append(" + v + ")", write(w -> w.append(v)), expected);
+        if (v == (int) v)
+            expect("writer append((int) " + v + ")", write(w -> w.append((int) v)), expected);
+        for (int width : new int[]{1, 2, 5, 19}){
+            expected = String.format("%0" + (v < 0 ? width + 1 : width) + "d", v);
+            expect("appendPadded(" + v + ", " + width + ")",
+                    DecimalUtils.appendPadded(new StringBuilder(), v, width).toString(), expected);
+            final int w = width;
+            expect("writer appendPadded(" + v + ", " + width + ")", write(x -> x.appendPadded(v, w)), expected);
+        }
+    }
+
+    private static void checkDouble(double v) throws IOException {
+        String expected = Double.toString(v);
+        String actual = DecimalUtils.append(new StringBuilder(), v).toString();
+        expect("writer append(" + expected + ")", write(w -> w.append(v)), actual);
+        if (actual.equals(expected))
+            return;
+        differences++;
+        if (Double.doubleToRawLongBits(Double.parseDouble(actual)) != Double.doubleToRawLongBits(v)){
+            fail("append(" + expected + ") gave " + actual + ", which doesn't parse back");
+            return;
+        }
+        int n = digits(actual), jdk = digits(expected);
+        if (n > Math.max(jdk, 2))
+            fail("append(" + expected + ") gave " + actual + ", longer");
+        else if (n >= jdk){
+            BigDecimal exact = new BigDecimal(v);
+            if (new BigDecimal(actual).subtract(exact).abs().compareTo(new BigDecimal(expected).subtract(exact).abs()) > 0)
+                fail("append(" + expected + ") gave " + actual + ", farther from " + exact);
+        }
+    }
+
+    /**
+     * @return the number of significant digits of a decimal written by Double.toString
+     */
+    private static int digits(String s){
+        String mantissa = s.replace("-", "").split("E")[0].replace(".", "");
+        mantissa = mantissa.replaceFirst("^0+", "").replaceFirst("0+$", "");
+        return Math.max(mantissa.length(), 1);
+    }
+
+    private interface Append {
+        void to(UnsafeBufferedWriter w) throws IOException;
+    }
+
+    /**
+     * Appends through a writer whose buffer is small, so that appends often have to flush it first.
+     */
+    private static String write(Append append) throws IOException {
+        StringWriter out = new StringWriter();
+        UnsafeBufferedWriter writer = new UnsafeBufferedWriter(out, 24);
+        writer.write("0123456789ABCDEF");
+        append.to(writer);
+        writer.flush();
+        return out.toString().substring(16);
+    }
+
+    private static void expect(String check, String actual, String expected){
+        if (!actual.equals(expected))
+            fail(check + " gave " + actual + ", expected " + expected);
+    }
+
+    private static void fail(String problem){
+        if (failures++ < 20)
+            System.out.println(problem);
+    }
+}
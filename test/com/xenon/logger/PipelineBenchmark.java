@@ -0,0 +1,71 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the formatting pipeline, see {@link LogManager#startFormatters(int)}, and its CPU usage once idle.
+ * Usage: <code>PipelineBenchmark [formatters] [events]</code>, 0 formatters meaning the daemon formats alone.
+ * The pipeline can only be started once per JVM, so compare runs, e.g. with 0, 1, 2 and 4 formatters: throughput
+ * only scales with formatters up to the number of cores left by the producer, the daemon and the writer.
+ * <p>
+ * Events are timed from the first log call until a {@link LogManager#flush()} completes, so formatting is fully
+ * included. Exits with 1 if the pipeline's threads burn more than 5% of a core while nothing is logged.
+ * @author Zenon
+ */
+public class PipelineBenchmark {
+
+    private static final double MAX_IDLE_LOAD = 0.05;
+
+    public static void main(String[] args) throws Exception {
+        final int formatters = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        final int events = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        LogManager.build(Files.createTempDirectory("pipeline-benchmark"), "pipeline.txt");
+        LogManager.setCoalescing(false);
+        LogManager.setWaitStrategy(LogManager.WaitStrategy.PARK);
+        if (formatters > 0)
+            LogManager.startFormatters(formatters);
+        BlockingLogger logger = LogManager.getLogger();
+
+        run(logger, events / 10);   // warm-up
+        long nanos = run(logger, events);
+        System.out.printf("%d formatters, %d cores: %.0f events/s%n", formatters,
+                Runtime.getRuntime().availableProcessors(), events * 1e9 / nanos);
+
+        if (formatters == 0)
+            System.exit(0);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Thread.sleep(200);      // let the threads go past their spinning
+        long cpu = pipelineCpu(threads);
+        Thread.sleep(1000);
+        double load = (pipelineCpu(threads) - cpu) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("idle pipeline: %.1f%% of a core%n", load * 100);
+        System.exit(load <= MAX_IDLE_LOAD ? 0 : 1);
+    }
+
+    private static long run(BlockingLogger logger, int events){
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++)
+            logger.info("event {} of {}, {}", i, events, 0.5 * i);
+        LogManager.flush().join();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return the CPU time of the formatter and writer threads, in nanoseconds
+     */
+    private static long pipelineCpu(ThreadMXBean threads){
+        long cpu = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.getName().startsWith("Log Formatter") || t.getName().equals("Log Writer"))
+                cpu += threads.getThreadCpuTime(t.getId());
+        return cpu;
+    }
+}
@@ -0,0 +1,155 @@
+package test.com.xenon.logger;
+
+import com.xenon.collections.DoubleTorus;
+import com.xenon.collections.IntTorus;
+import com.xenon.collections.LongTorus;
+import com.xenon.collections.abstraction.PrimitiveTorus;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Checks {@link IntTorus}, {@link LongTorus} and {@link DoubleTorus}: with producers adding concurrently to a
+ * torus big enough never to overwrite, while a consumer drains it, every value must be drained exactly once, in
+ * the order of its producer. Then, on a torus overfilled by a single thread, only the last values must be
+ * drained, oldest first.
+ * Usage: <code>PrimitiveTorusCheck [producers] [valuesPerProducer]</code>. Exits with 1 if a value is lost,
+ * duplicated or reordered.
+ * @author Zenon
+ */
+public class PrimitiveTorusCheck {
+
+    /**
+     * Added to the values of the {@link LongTorus}, so that they need more than 32 bits.
+     */
+    private static final long LONG_OFFSET = 1L << 40;
+
+    private static int failures;
+
+    /**
+     * The operations checked, on values encoded as longs.
+     */
+    private interface Ring {
+        void add(long v);
+        int drain(LongConsumer consumer);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int values = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+        final int capacity = Integer.highestOneBit(producers * values - 1) << 1;
+
+        IntTorus ints = IntTorus.build(capacity);
+        LongTorus longs = LongTorus.build(capacity);
+        DoubleTorus doubles = DoubleTorus.build(capacity);
+        concurrent("IntTorus", ints, ring(ints), producers, values);
+        concurrent("LongTorus", longs, ring(longs), producers, values);
+        concurrent("DoubleTorus", doubles, ring(doubles), producers, values);
+
+        IntTorus smallInts = IntTorus.build(16);
+        LongTorus smallLongs = LongTorus.build(16);
+        DoubleTorus smallDoubles = DoubleTorus.build(16);
+        overwrite("IntTorus", smallInts, ring(smallInts));
+        overwrite("LongTorus", smallLongs, ring(smallLongs));
+        overwrite("DoubleTorus", smallDoubles, ring(smallDoubles));
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Ring ring(IntTorus t){
+        return new Ring() {
+            public void add(long v) { t.add((int) v); }
+            public int drain(LongConsumer c) { return t.drain(c::accept); }
+        };
+    }
+
+    private static Ring ring(LongTorus t){
+        return new Ring() {
+            public void add(long v) { t.add(v + LONG_OFFSET); }
+            public int drain(LongConsumer c) { return t.drain(v -> c.accept(v - LONG_OFFSET)); }
+        };
+    }
+
+    private static Ring ring(DoubleTorus t){
+        return new Ring() {
+            public void add(long v) { t.add(v); }
+            public int drain(LongConsumer c) { return t.drain(v -> c.accept((long) v)); }
+        };
+    }
+
+    /**
+     * Producer p adds <code>p * values + i</code> for i from 0, while the calling thread drains.
+     */
+    private static void concurrent(String name, PrimitiveTorus torus, Ring ring, int producers, int values)
+            throws InterruptedException {
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++){
+            final long base = (long) p * values;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < values; i++)
+                    ring.add(base + i);
+            });
+            threads[p].start();
+        }
+
+        boolean[] seen = new boolean[producers * values];
+        long[] next = new long[producers];
+        String[] problem = {null};
+        int drained = 0;
+        boolean producing = true;
+        while (producing || !torus.isEmpty()){
+            producing = false;
+            for (Thread t : threads)
+                producing |= t.isAlive();
+            drained += ring.drain(v -> {
+                if (problem[0] != null)
+                    return;
+                if (v < 0 || v >= seen.length){
+                    problem[0] = "unknown value " + v;
+                    return;
+                }
+                int p = (int) (v / values);
+                if (seen[(int) v])
+                    problem[0] = "value " + v + " drained twice";
+                else if (v % values != next[p])
+                    problem[0] = "producer " + p + ": value " + v % values + " drained, " + next[p] + " expected";
+                else {
+                    seen[(int) v] = true;
+                    next[p]++;
+                }
+            });
+        }
+        for (Thread t : threads)
+            t.join();
+        if (problem[0] == null && drained != seen.length)
+            problem[0] = (seen.length - drained) + " values lost out of " + seen.length;
+        report(name + ", " + producers + " producers", problem[0]);
+    }
+
+    /**
+     * Adds twice the capacity and a half: only the last capacity values remain.
+     */
+    private static void overwrite(String name, PrimitiveTorus torus, Ring ring){
+        final int capacity = torus.capacity(), added = 2 * capacity + capacity / 2;
+        for (int i = 0; i < added; i++)
+            ring.add(i);
+        long[] expected = {added - capacity};
+        String[] problem = {null};
+        int drained = ring.drain(v -> {
+            if (problem[0] == null && v != expected[0])
+                problem[0] = "drained " + v + ", expected " + expected[0];
+            expected[0]++;
+        });
+        if (problem[0] == null && drained != capacity)
+            problem[0] = drained + " values drained, expected " + capacity;
+        report(name + ", overwrite", problem[0]);
+    }
+
+    private static void report(String check, String problem){
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+}
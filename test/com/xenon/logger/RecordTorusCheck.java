@@ -0,0 +1,270 @@
+package test.com.xenon.logger;
+
+import com.xenon.collections.RecordTorus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Checks {@link RecordTorus}:
+ * <ul>
+ *     <li>records of every length written and read many times around a small ring, so that they often don't fit
+ *     before its end: each must come back once, in order, with its type and payload, and the padding records
+ *     filling the end must never be read;</li>
+ *     <li>a claim that needs a padding record fails if the padding doesn't fit either, and a full ring refuses
+ *     claims rather than overwriting;</li>
+ *     <li>a record claimed but not committed holds back the records claimed after it;</li>
+ *     <li>producers claiming concurrently while a consumer reads: every record read exactly once, in the order
+ *     of its producer.</li>
+ * </ul>
+ * Usage: <code>RecordTorusCheck [producers] [recordsPerProducer]</code>. Exits with 1 if a record is lost,
+ * duplicated, reordered or corrupted.
+ * @author Zenon
+ */
+public class RecordTorusCheck {
+
+    private static final int CAPACITY = 256;
+
+    private static int failures;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int records = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+
+        wrapAround();
+        padding();
+        uncommitted();
+        concurrent(producers, records);
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Writes a record whose payload is its sequence number, then as many bytes as its length allows,
+     * each derived from the sequence.
+     * @return the offset of the payload, or -1 if the ring is full
+     */
+    private static int write(RecordTorus torus, long sequence, int length, int type){
+        int offset = torus.claim(length, type);
+        if (offset < 0)
+            return -1;
+        ByteBuffer b = torus.buffer();
+        if (length >= 8)
+            b.putLong(offset, sequence);
+        for (int i = Math.min(length, 8); i < length; i++)
+            b.put(offset + i, (byte) (sequence + i));
+        torus.commit(offset);
+        return offset;
+    }
+
+    /**
+     * @return null if the record is the one {@link #write(RecordTorus, long, int, int)} wrote for the sequence,
+     * otherwise what's wrong with it
+     */
+    private static String verify(ByteBuffer b, int offset, int length, int type, long sequence, int expectedLength,
+                                 int expectedType){
+        if (length != expectedLength || type != expectedType)
+            return "record " + sequence + ": length " + length + " type " + type + ", expected length "
+                    + expectedLength + " type " + expectedType;
+        if (length >= 8 && b.getLong(offset) != sequence)
+            return "record " + sequence + ": read sequence " + b.getLong(offset);
+        for (int i = Math.min(length, 8); i < length; i++)
+            if (b.get(offset + i) != (byte) (sequence + i))
+                return "record " + sequence + ": payload corrupted at byte " + i;
+        return null;
+    }
+
+    /**
+     * Writes then reads a few records at a time, with lengths cycling through every payload length, so that
+     * records end up at every offset and regularly wrap around.
+     */
+    private static void wrapAround(){
+        RecordTorus torus = RecordTorus.build(CAPACITY);
+        final int lengths = torus.maxLength() + 1;
+        long written = 0, read = 0;
+        long[] next = {0};
+        String[] problem = {null};
+        int wraps = 0, lastOffset = -1;
+        for (int round = 0; round < 100_000 && problem[0] == null; round++){
+            for (int i = round % 5; i >= 0; i--){
+                int offset = write(torus, written, (int) (written % lengths), (int) (written % 7));
+                if (offset < 0)
+                    break;
+                if (offset < lastOffset)
+                    wraps++;
+                lastOffset = offset;
+                written++;
+            }
+            read += torus.read((b, offset, length, type) -> {
+                if (problem[0] == null)
+                    problem[0] = verify(b, offset, length, type, next[0], (int) (next[0] % lengths),
+                            (int) (next[0] % 7));
+                next[0]++;
+            });
+        }
+        if (problem[0] == null && read != written)
+            problem[0] = (written - read) + " records lost out of " + written;
+        if (problem[0] == null && torus.size() != 0)
+            problem[0] = torus.size() + " bytes left once everything read";
+        if (problem[0] == null && wraps == 0)
+            problem[0] = "no record wrapped around";
+        report("wrap-around, " + written + " records, " + wraps + " wraps", problem[0]);
+    }
+
+    /**
+     * Fills the ring, checks it refuses claims, then leads records not to fit before the end of the ring: they
+     * must start back at 0 after a padding record, which is never read, and whose room must be free too.
+     */
+    private static void padding(){
+        RecordTorus torus = RecordTorus.build(CAPACITY);
+        final int length = torus.maxLength();     // 32 bytes records
+        String problem = null;
+        int count = 0;
+        while (write(torus, count, length, 1) >= 0)
+            count++;
+        if (count != CAPACITY / (length + RecordTorus.HEADER))
+            problem = count + " records fit, expected " + CAPACITY / (length + RecordTorus.HEADER);
+        else if (torus.claim(0) >= 0)
+            problem = "claimed in a full ring";
+
+        // consume one record: 32 bytes free at the start, none at the end
+        long[] next = {0};
+        torus.read((b, offset, l, type) -> next[0]++, 1);
+        if (problem == null && write(torus, count, length, 1) != RecordTorus.HEADER)
+            problem = "no room for a record where the consumed one was";
+        if (problem == null && torus.claim(0) >= 0)
+            problem = "claimed in a full ring after wrapping";
+        String[] read = {null};
+        torus.read((b, offset, l, type) -> {
+            if (read[0] == null)
+                read[0] = verify(b, offset, l, type, next[0], length, 1);
+            next[0]++;
+        });
+        if (problem == null)
+            problem = read[0];
+        if (problem == null && next[0] != count + 1)
+            problem = next[0] + " records read, expected " + (count + 1);
+
+        // 24 bytes records up to 8 bytes before the end, then the first one consumed: 32 bytes free in all,
+        // 8 at the end and 24 at the start
+        torus = RecordTorus.build(CAPACITY);
+        for (int i = 0; i < 10; i++)
+            write(torus, i, 16, 1);
+        write(torus, 10, 0, 1);
+        next[0] = 0;
+        torus.read((b, offset, l, type) -> next[0]++, 1);
+        if (problem == null && torus.claim(length, 1) >= 0)     // 32 bytes, plus 8 bytes of padding
+            problem = "claimed a record whose padding doesn't fit";
+        if (problem == null && write(torus, 11, 16, 2) != RecordTorus.HEADER)  // 24 bytes, plus 8 of padding
+            problem = "a record not fitting before the end didn't start back at 0";
+        if (problem == null && torus.size() != CAPACITY)
+            problem = "padding record not counted, " + torus.size() + " bytes claimed";
+        long[] types = {0};
+        torus.read((b, offset, l, type) -> {
+            if (read[0] == null)
+                read[0] = type == 1 ? verify(b, offset, l, type, next[0], next[0] == 10 ? 0 : 16, 1)
+                        : verify(b, offset, l, type, next[0], 16, 2);
+            if (type != 1 && type != 2)
+                types[0]++;
+            next[0]++;
+        });
+        if (problem == null)
+            problem = read[0];
+        if (problem == null && types[0] != 0)
+            problem = "padding record read";
+        if (problem == null && next[0] != 12)
+            problem = next[0] + " records read, expected 12";
+        if (problem == null && torus.size() != 0)
+            problem = torus.size() + " bytes left once everything read";
+        report("padding records", problem);
+    }
+
+    /**
+     * Claims two records and commits the second one only: nothing is readable until the first is committed.
+     */
+    private static void uncommitted(){
+        RecordTorus torus = RecordTorus.build(CAPACITY);
+        int first = torus.claim(8, 1);
+        write(torus, 1, 8, 2);
+        String problem = null;
+        int n = torus.read((b, offset, length, type) -> {});
+        if (n != 0)
+            problem = n + " records read past an uncommitted one";
+        torus.buffer().putLong(first, 0);
+        torus.commit(first);
+        int[] types = new int[2];
+        int[] i = {0};
+        n = torus.read((b, offset, length, type) -> {
+            if (i[0] < 2)
+                types[i[0]] = type;
+            i[0]++;
+        });
+        if (problem == null && (n != 2 || types[0] != 1 || types[1] != 2))
+            problem = n + " records read once committed, types " + types[0] + ", " + types[1];
+        report("uncommitted record", problem);
+    }
+
+    /**
+     * Producer p writes records <code>p * records + i</code> for i from 0, retrying while the ring is full,
+     * while the calling thread reads.
+     */
+    private static void concurrent(int producers, int records) throws InterruptedException {
+        RecordTorus torus = RecordTorus.build(1 << 12);
+        final int lengths = torus.maxLength() + 1;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++){
+            final long base = (long) p * records;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < records; i++){
+                    long sequence = base + i;
+                    while (write(torus, sequence, 8 + (int) (sequence % (lengths - 8)), 1) < 0)
+                        Thread.yield();     // full: let the consumer run
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        String[] problem = {null};
+        long read = 0;
+        boolean producing = true;
+        while (producing || torus.size() != 0){
+            producing = false;
+            for (Thread t : threads)
+                producing |= t.isAlive();
+            int n = torus.read((b, offset, length, type) -> {
+                if (problem[0] != null)
+                    return;
+                long sequence = b.getLong(offset);
+                int p = (int) (sequence / records);
+                if (sequence < 0 || p >= producers){
+                    problem[0] = "unknown record " + sequence;
+                    return;
+                }
+                if (sequence % records != next[p])
+                    problem[0] = "producer " + p + ": record " + sequence % records + " read, " + next[p]
+                            + " expected";
+                else {
+                    problem[0] = verify(b, offset, length, type, sequence, 8 + (int) (sequence % (lengths - 8)), 1);
+                    next[p]++;
+                }
+            });
+            if (n == 0)
+                Thread.yield();     // empty: let the producers run
+            read += n;
+        }
+        for (Thread t : threads)
+            t.join();
+        if (problem[0] == null && read != (long) producers * records)
+            problem[0] = ((long) producers * records - read) + " records lost out of " + (long) producers * records;
+        report("concurrent, " + producers + " producers", problem[0]);
+    }
+
+    private static void report(String check, String problem){
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+}
@@ -0,0 +1,176 @@
+package test.com.xenon.logger;
+
+import com.xenon.collections.SegmentedTorus;
+import com.xenon.utils.SpinLock;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks {@link SegmentedTorus}:
+ * <ul>
+ *     <li>bursts several times its capacity, spilled across segments, interleaved with consumption: every element
+ *     consumed once, in the order it was added, and elements added while the chain isn't drained go after it even
+ *     if the ring has room;</li>
+ *     <li>segment reuse: once warmed up, a burst spilling into as many segments as are pooled allocates nothing,
+ *     while one spilling into more allocates the segments not pooled;</li>
+ *     <li>producers adding concurrently while a consumer drains a small torus: every element consumed once, in the
+ *     order of its producer.</li>
+ * </ul>
+ * Usage: <code>SegmentedTorusCheck [producers] [elementsPerProducer]</code>. Exits with 1 if an element is lost,
+ * duplicated or reordered, or if drained segments aren't reused.
+ * @author Zenon
+ */
+public class SegmentedTorusCheck {
+
+    private static final int CAPACITY = 64;
+    /**
+     * Bytes per burst tolerated by the reuse check, for allocations outside the torus, e.g. by the JIT.
+     */
+    private static final long SLACK = 256;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static int failures;
+
+    /**
+     * Boxed once, so that adding allocates nothing but what the torus does.
+     */
+    private static Integer[] values;
+
+    public static void main(String[] args) throws InterruptedException {
+        final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int elements = args.length > 1 ? Integer.parseInt(args[1]) : 250_000;
+        values = new Integer[Math.max(producers * elements, CAPACITY * 32)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = i;
+
+        fifo();
+        reuse(SegmentedTorus.DEFAULT_POOLED_SEGMENTS, SegmentedTorus.DEFAULT_POOLED_SEGMENTS, false);
+        reuse(2, SegmentedTorus.DEFAULT_POOLED_SEGMENTS, true);
+        concurrent(producers, elements);
+
+        System.out.println(failures == 0 ? "all checks passed" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Adds and consumes by uneven bursts, so that the chain grows, shrinks and empties many times.
+     */
+    private static void fifo(){
+        SegmentedTorus<Integer> torus = SegmentedTorus.build(CAPACITY);
+        int added = 0, next = 0;
+        String problem = null;
+        for (int round = 0; round < 1000 && problem == null; round++){
+            int burst = round % 7 * CAPACITY + round % 13;      // from none to beyond 6 segments
+            for (int i = 0; i < burst; i++)
+                torus.add(values[added++ % values.length]);
+            if (torus.size() != added - next)
+                problem = "size " + torus.size() + ", expected " + (added - next);
+            int consume = round % 3 == 0 ? added - next : (added - next) / 2;  // drain all, or half
+            for (int i = 0; i < consume && problem == null; i++){
+                Integer v = torus.consume();
+                if (v == null || v != next % values.length)
+                    problem = "consumed " + v + ", expected " + next % values.length;
+                next++;
+            }
+        }
+        for (Integer v = torus.consume(); v != null && problem == null; v = torus.consume()){
+            if (v != next % values.length)
+                problem = "consumed " + v + ", expected " + next % values.length;
+            next++;
+        }
+        if (problem == null && next != added)
+            problem = (added - next) + " elements lost out of " + added;
+        if (problem == null && !torus.isEmpty())
+            problem = "not empty once drained";
+        report("FIFO across segments, " + added + " elements", problem);
+    }
+
+    /**
+     * Fills the ring and the given number of segments, then drains, many times.
+     * @param pooled the number of segments the torus keeps
+     * @param segments the number of segments each burst spills into
+     * @param allocating whether bursts are expected to allocate, as they spill into more segments than pooled
+     */
+    private static void reuse(int pooled, int segments, boolean allocating){
+        SegmentedTorus<Integer> torus = SegmentedTorus.build(CAPACITY, pooled, SpinLock.create());
+        final int burst = CAPACITY * (1 + segments);
+        long bytes = 0;
+        for (int round = 0; round < 64; round++){
+            long start = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < burst; i++)
+                torus.add(values[i]);
+            for (int i = 0; i < burst; i++)
+                torus.consume();
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - start;   // the last round, warmed up
+        }
+        // a segment holds CAPACITY references, at least 4 bytes each
+        final long unpooled = (long) (segments - Math.min(pooled, segments)) * CAPACITY * 4;
+        String problem = null;
+        if (!allocating && bytes > SLACK)
+            problem = bytes + " bytes allocated by a burst, pooled segments not reused";
+        else if (allocating && bytes < unpooled)
+            problem = "only " + bytes + " bytes allocated by a burst, expected " + unpooled + " at least for the "
+                    + (segments - pooled) + " segments not pooled";
+        report("segment reuse, " + segments + " segments, " + pooled + " pooled, " + bytes + " bytes per burst",
+                problem);
+    }
+
+    /**
+     * Producer p adds <code>p * elements + i</code> for i from 0, while the calling thread consumes.
+     */
+    private static void concurrent(int producers, int elements) throws InterruptedException {
+        SegmentedTorus<Integer> torus = SegmentedTorus.build(16);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++){
+            final int base = p * elements;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < elements; i++)
+                    torus.add(values[base + i]);
+            });
+            threads[p].start();
+        }
+
+        boolean[] seen = new boolean[producers * elements];
+        int[] next = new int[producers];
+        String problem = null;
+        int consumed = 0;
+        boolean producing = true;
+        while (problem == null && (producing || !torus.isEmpty())){
+            producing = false;
+            for (Thread t : threads)
+                producing |= t.isAlive();
+            Integer v = torus.consume();
+            if (v == null){
+                Thread.yield();     // empty: let the producers run
+                continue;
+            }
+            consumed++;
+            int p = v / elements;
+            if (v < 0 || v >= seen.length)
+                problem = "unknown element " + v;
+            else if (seen[v])
+                problem = "element " + v + " consumed twice";
+            else if (v % elements != next[p])
+                problem = "producer " + p + ": element " + v % elements + " consumed, " + next[p] + " expected";
+            else {
+                seen[v] = true;
+                next[p]++;
+            }
+        }
+        for (Thread t : threads)
+            t.join();
+        if (problem == null && consumed != seen.length)
+            problem = (seen.length - consumed) + " elements lost out of " + seen.length;
+        report("concurrent, " + producers + " producers", problem);
+    }
+
+    private static void report(String check, String problem){
+        if (problem != null){
+            failures++;
+            System.out.println(check + ": " + problem);
+        } else
+            System.out.println(check + ": ok");
+    }
+}
@@ -0,0 +1,75 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogCollector;
+import com.xenon.logging.LogLayout;
+import com.xenon.logging.LogManager;
+import com.xenon.utils.FilesUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs several JVMs logging into one shared ring, drained by an in-process {@link LogCollector},
+ * then counts the collected lines per process. Each process prints how many lines it dropped because the ring was
+ * full, see {@link LogManager#sharedDropped()}.
+ * Usage: <code>SharedRingDemo [processes] [linesPerProcess]</code>.
+ *
+ * @author Zenon
+ */
+public class SharedRingDemo {
+
+    private static final int CAPACITY = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("child")){
+            child(Path.of(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int lines = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        Path dir = Files.createTempDirectory("shared-ring");
+        Path ring = dir.resolve("ring"), log = dir.resolve("collected.txt");
+        var collector = new LogCollector(FilesUtils.mapRecordTorus(ring, CAPACITY),
+                FilesUtils.newUnsafeBufferedWriter(log, StandardCharsets.UTF_8), LogLayout.DEFAULT);
+        Thread collecting = new Thread(collector::run);
+        collecting.start();
+
+        Process[] children = new Process[processes];
+        for (int i = 0; i < processes; i++)
+            children[i] = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"),
+                    SharedRingDemo.class.getName(), "child", ring.toString(), String.valueOf(lines))
+                    .directory(dir.toFile())
+                    .inheritIO()
+                    .start();
+        for (Process p : children)
+            p.waitFor();
+
+        collector.stop();
+        collecting.join();
+
+        Map<String, Integer> perProcess = new HashMap<>();
+        List<String> collected = Files.readAllLines(log);
+        for (String line : collected){
+            String pid = line.substring(line.indexOf('[') + 1, line.indexOf('/'));
+            perProcess.merge(pid, 1, Integer::sum);
+        }
+        System.out.println("collected " + collected.size() + " lines out of " + processes * lines + " in " + log);
+        perProcess.forEach((pid, n) -> System.out.println("  pid " + pid + ": " + n));
+    }
+
+    private static void child(Path ring, int lines) throws IOException {
+        LogManager.share(ring, CAPACITY);
+        BlockingLogger logger = LogManager.getLogger();
+        for (int i = 0; i < lines; i++)
+            logger.info("line " + i);
+        System.out.println("  pid " + ProcessHandle.current().pid() + " dropped " + LogManager.sharedDropped()
+                + " lines");
+    }
+}
@@ -0,0 +1,185 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.BlockingLogger;
+import com.xenon.logging.LogManager;
+
+import java.io.BufferedReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak test of the whole logging path: producers drive {@link BlockingLogger} for minutes, then the log file is
+ * checked for lost, duplicated and reordered events. Meant to qualify a queue or a configuration before deploying
+ * it, so the logging system is configured as usual (<code>-Dxenon.log.config=...</code>), only the log file and the
+ * pattern are set here.
+ * <p>
+ * Usage: <code>SoakHarness [key=value]...</code>, keys being
+ * <ul>
+ *     <li><code>threads</code> the number of producers, default 4</li>
+ *     <li><code>rate</code> events per second per producer, default 10000</li>
+ *     <li><code>profile</code> <code>fixed</code> (evenly spaced events, default) or <code>burst</code>
+ *     (<code>burst</code> events at once, as many times per second as needed to reach the rate)</li>
+ *     <li><code>burst</code> the size of a burst, default 1000</li>
+ *     <li><code>seconds</code> the duration, default 60</li>
+ *     <li><code>virtual</code> whether producers are virtual threads (JDK 21+), default false</li>
+ *     <li><code>dir</code> the directory of the log file, default <code>./soak</code></li>
+ * </ul>
+ * Latencies are measured from the time each event was <em>scheduled</em> to be logged, not from the time it was
+ * actually logged: a producer stalled by the logger logs its late events right away and their latency includes
+ * the stall. This corrects for coordinated omission, which would otherwise hide exactly the stalls we look for.
+ * <ul>
+ *     <li>enqueue latency: until {@link BlockingLogger#info(String)} returns, for every event</li>
+ *     <li>enqueue-to-disk latency: until a {@link LogManager#flush()} issued right after the event completes,
+ *     sampled every millisecond by a dedicated prober thread</li>
+ * </ul>
+ *
+ * @author Zenon
+ */
+public class SoakHarness {
+
+    private static final String PREFIX = "soak ";
+    private static final long PROBE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args){
+            int eq = arg.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        final int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        final int rate = Integer.parseInt(options.getOrDefault("rate", "10000"));
+        final boolean burst = options.getOrDefault("profile", "fixed").equals("burst");
+        final int burstSize = burst ? Integer.parseInt(options.getOrDefault("burst", "1000")) : 1;
+        final long seconds = Long.parseLong(options.getOrDefault("seconds", "60"));
+        final boolean virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        final Path dir = Path.of(options.getOrDefault("dir", "soak"));
+
+        Path file = dir.resolve("soak.txt");
+        Files.deleteIfExists(file);
+        LogManager.build(dir, "soak.txt");
+        LogManager.setPattern("%m");
+        LogManager.setCoalescing(false);
+        BlockingLogger logger = LogManager.getLogger();
+
+        final long interval = TimeUnit.SECONDS.toNanos(1) * burstSize / rate;   // between two bursts
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        LatencyHistogram[] enqueue = new LatencyHistogram[threads];
+        long[] sent = new long[threads];
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++){
+            final int id = t;
+            enqueue[t] = new LatencyHistogram();
+            producers[t] = newThread(virtual, () -> {
+                LatencyHistogram h = enqueue[id];
+                long seq = 0;
+                for (long scheduled = start; scheduled < end; scheduled += interval){
+                    waitUntil(scheduled);
+                    for (int i = 0; i < burstSize; i++){
+                        logger.info(PREFIX + id + ' ' + seq++);
+                        h.record(System.nanoTime() - scheduled);
+                    }
+                }
+                sent[id] = seq;
+            });
+        }
+
+        LatencyHistogram toDisk = new LatencyHistogram();
+        Thread prober = newThread(false, () -> {
+            for (long scheduled = start; scheduled < end; scheduled += PROBE_INTERVAL){
+                waitUntil(scheduled);
+                logger.info("probe");
+                LogManager.flush().join();
+                toDisk.record(System.nanoTime() - scheduled);
+            }
+        });
+
+        for (Thread p : producers)
+            p.start();
+        prober.start();
+        for (Thread p : producers)
+            p.join();
+        prober.join();
+        LogManager.flush().join();
+
+        long total = Arrays.stream(sent).sum();
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram h : enqueue)
+            all.add(h);
+        System.out.printf("%d producers (%s threads), %s profile, %d events/s each, %d s: %d events%n", threads,
+                virtual ? "virtual" : "platform", burst ? "burst of " + burstSize : "fixed", rate, seconds, total);
+        System.out.println("enqueue:         " + all.summary());
+        System.out.println("enqueue to disk: " + toDisk.summary());
+        System.exit(verify(file, sent) ? 0 : 1);
+    }
+
+    /**
+     * Checks that every producer's events are all in the file, once each, in order.
+     * @return whether the file is correct
+     */
+    private static boolean verify(Path file, long[] sent) throws Exception {
+        BitSet[] seen = new BitSet[sent.length];
+        long[] last = new long[sent.length];
+        for (int id = 0; id < sent.length; id++){
+            seen[id] = new BitSet();
+            last[id] = -1;
+        }
+        long duplicated = 0, reordered = 0, foreign = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            for (String line; (line = reader.readLine()) != null;){
+                if (!line.startsWith(PREFIX)){
+                    if (!line.equals("probe"))
+                        foreign++;
+                    continue;
+                }
+                int space = line.indexOf(' ', PREFIX.length());
+                int id = Integer.parseInt(line, PREFIX.length(), space, 10);
+                int seq = Integer.parseInt(line, space + 1, line.length(), 10);
+                if (seen[id].get(seq))
+                    duplicated++;
+                else if (seq < last[id])
+                    reordered++;
+                seen[id].set(seq);
+                last[id] = Math.max(last[id], seq);
+            }
+        }
+        long lost = 0;
+        for (int id = 0; id < sent.length; id++)
+            lost += sent[id] - seen[id].cardinality();
+        System.out.printf("verification: lost=%d duplicated=%d reordered=%d foreign lines=%d%n",
+                lost, duplicated, reordered, foreign);
+        return lost == 0 && duplicated == 0 && reordered == 0;
+    }
+
+    private static void waitUntil(long deadline){
+        for (long now = System.nanoTime(); now < deadline; now = System.nanoTime())
+            LockSupport.parkNanos(deadline - now);
+    }
+
+    /**
+     * Creates a platform or a virtual thread. Virtual threads are looked up reflectively, as they need JDK 21.
+     */
+    private static Thread newThread(boolean virtual, Runnable r){
+        if (!virtual)
+            return new Thread(r);
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method unstarted = ofVirtual.getReturnType().getMethod("unstarted", Runnable.class);
+            return (Thread) unstarted.invoke(builder, r);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual threads need JDK 21 or later", e);
+        }
+    }
+}
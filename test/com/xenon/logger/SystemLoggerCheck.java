@@ -0,0 +1,90 @@
+package test.com.xenon.logger;
+
+import com.xenon.logging.Appender;
+import com.xenon.logging.LogEvent;
+import com.xenon.logging.LogManager;
+import com.xenon.logging.SystemLoggerFinder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that {@link System.Logger} calls made while {@link LogManager} starts, as JDK components may do once
+ * {@link SystemLoggerFinder} is registered, neither deadlock nor get lost.
+ * Usage: <code>SystemLoggerCheck</code>. Exits with 1 on a deadlock or a missing event.
+ * <p>
+ * The finder is opt-in, so the check runs in a child JVM whose class path holds a service file registering it.
+ * The child's first log call starts logging, whose configuration instantiates {@link StartupAppender}: it logs
+ * through {@link System.Logger} from the starting thread, then from another thread that the starting thread waits
+ * for.
+ * @author Zenon
+ */
+public class SystemLoggerCheck {
+
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final List<String> MESSAGES = List.of("first call", "from the starting thread",
+            "from a thread the starting thread waits for");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0){
+            child(Path.of(args[0]));
+            return;
+        }
+        Path dir = Files.createTempDirectory("system-logger");
+        Path services = Files.createDirectories(dir.resolve("META-INF/services"));
+        Files.writeString(services.resolve("java.lang.System$LoggerFinder"), SystemLoggerFinder.class.getName());
+        Path config = dir.resolve("log.properties");
+        Files.writeString(config, "xenon.log.directory=" + dir.toString().replace('\\', '/') + "\n" +
+                "xenon.log.file=check.txt\n" +
+                "xenon.log.appenders=" + StartupAppender.class.getName() + "\n");
+
+        Process child = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path") + File.pathSeparator + dir,
+                "-Dxenon.log.config=" + config, SystemLoggerCheck.class.getName(), dir.resolve("check.txt").toString())
+                .inheritIO().start();
+        if (!child.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+            child.destroyForcibly();
+            System.out.println("deadlock: the child didn't end within " + TIMEOUT_SECONDS + " s");
+            System.exit(1);
+        }
+        System.exit(child.exitValue());
+    }
+
+    private static void child(Path log) throws Exception {
+        if (!(System.LoggerFinder.getLoggerFinder() instanceof SystemLoggerFinder)){
+            System.out.println("SystemLoggerFinder isn't registered");
+            System.exit(1);
+        }
+        System.getLogger("check").log(System.Logger.Level.INFO, MESSAGES.get(0));
+        LogManager.flush().join();
+
+        String text = Files.readString(log);
+        boolean ok = true;
+        for (String m : MESSAGES){
+            boolean found = text.contains(m);
+            ok &= found;
+            System.out.println((found ? "logged: " : "MISSING: ") + m);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Logs through {@link System.Logger} when instantiated, i.e. while logging starts.
+     */
+    public static final class StartupAppender implements Appender {
+
+        public StartupAppender() throws InterruptedException {
+            System.getLogger("startup").log(System.Logger.Level.INFO, MESSAGES.get(1));
+            Thread t = new Thread(() -> System.getLogger("startup").log(System.Logger.Level.WARNING, MESSAGES.get(2)));
+            t.start();
+            t.join();
+        }
+
+        @Override
+        public void append(LogEvent event) {
+        }
+    }
+}
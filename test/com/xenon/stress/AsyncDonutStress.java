@@ -0,0 +1,103 @@
+package test.com.xenon.stress;
+
+import com.xenon.collections.AsyncDonut;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stress tests of {@link AsyncDonut}.
+ * @author Zenon
+ */
+public final class AsyncDonutStress {
+
+    private AsyncDonutStress(){}
+
+    public static List<StressTest<?>> tests(){
+        return List.of(new AddAdd(4, false), new AddAdd(2, true), new AddConsume());
+    }
+
+    private static final class State {
+        final AsyncDonut<Integer> donut;
+        Integer consumed;
+
+        State(int capacity){
+            donut = AsyncDonut.build(capacity);
+        }
+    }
+
+    /**
+     * Two producers add concurrently, then both elements are consumed. When the donut is already full,
+     * the oldest element must be the one overwritten.
+     */
+    private static final class AddAdd extends StressTest<State> {
+        private final int capacity;
+        private final boolean full;
+
+        AddAdd(int capacity, boolean full){
+            super("AsyncDonut add+add" + (full ? " (overwrite)" : ""), 2);
+            this.capacity = capacity;
+            this.full = full;
+        }
+
+        @Override
+        protected State newState() {
+            State s = new State(capacity);
+            if (full)
+                s.donut.add(0);
+            return s;
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            s.donut.add(actor + 1);
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            Integer[] r = {s.donut.consume(), s.donut.consume()};
+            Arrays.sort(r, (a, b) -> a == null ? (b == null ? 0 : -1) : b == null ? 1 : a.compareTo(b));
+            return Arrays.toString(r);
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("[1, 2]") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+
+    /**
+     * A producer adds while the consumer takes the element already there, then the arbiter takes the new one.
+     */
+    private static final class AddConsume extends StressTest<State> {
+
+        AddConsume(){
+            super("AsyncDonut add+consume", 2);
+        }
+
+        @Override
+        protected State newState() {
+            State s = new State(4);
+            s.donut.add(0);
+            return s;
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0)
+                s.donut.add(1);
+            else
+                s.consumed = s.donut.consume();
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.consumed + ", " + s.donut.consume();
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("0, 1") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+}
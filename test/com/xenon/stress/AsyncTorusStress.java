@@ -0,0 +1,108 @@
+package test.com.xenon.stress;
+
+import com.xenon.collections.AsyncTorus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stress tests of {@link AsyncTorus}.
+ * @author Zenon
+ */
+public final class AsyncTorusStress {
+
+    private AsyncTorusStress(){}
+
+    public static List<StressTest<?>> tests(){
+        return List.of(new AddAdd(), new AddConsumeAll());
+    }
+
+    private static final class State {
+        final AsyncTorus<Integer> torus;
+        final List<Integer> seen = new ArrayList<>();
+
+        State(int capacity){
+            torus = AsyncTorus.build(capacity);
+        }
+    }
+
+    private static String contents(AsyncTorus<Integer> torus){
+        List<Integer> l = new ArrayList<>();
+        torus.consumeAll(e -> {
+            if (e != null)
+                l.add(e);
+        });
+        l.sort(null);
+        return l.toString();
+    }
+
+    /**
+     * Two producers add concurrently to a torus with room for both: none may be lost.
+     */
+    private static final class AddAdd extends StressTest<State> {
+
+        AddAdd(){
+            super("AsyncTorus add+add", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State(2);
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            s.torus.add(actor + 1);
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return contents(s.torus);
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("[1, 2]") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+
+    /**
+     * A producer adds while the consumer reads everything: the element already there must be seen once,
+     * the new one at most once.
+     */
+    private static final class AddConsumeAll extends StressTest<State> {
+
+        AddConsumeAll(){
+            super("AsyncTorus add+consumeAll", 2);
+        }
+
+        @Override
+        protected State newState() {
+            State s = new State(4);
+            s.torus.add(0);
+            return s;
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0)
+                s.torus.add(1);
+            else
+                s.torus.consumeAll(e -> {
+                    if (e != null)
+                        s.seen.add(e);
+                });
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            s.seen.sort(null);
+            return s.seen.toString();
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("[0]") || outcome.equals("[0, 1]") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package test.com.xenon.stress;
+
+import com.xenon.logging.LogEvent;
+import com.xenon.logging.LogEventPool;
+import com.xenon.logging.LogManager;
+
+import java.util.List;
+
+/**
+ * Stress tests of {@link LogEventPool}.
+ * @author Zenon
+ */
+public final class LogEventPoolStress {
+
+    private LogEventPoolStress(){}
+
+    public static List<StressTest<?>> tests(){
+        return List.of(new ClaimPoll(), new ClaimClaim());
+    }
+
+    private static final class State {
+        final LogEventPool pool = LogEventPool.build(4);
+        LogEvent a, b;
+        String polled;
+    }
+
+    /**
+     * A producer claims, fills and publishes an event while the consumer polls: the consumer sees nothing, or the
+     * complete event, never a blank or partly filled one.
+     */
+    private static final class ClaimPoll extends StressTest<State> {
+
+        ClaimPoll(){
+            super("LogEventPool claim+poll", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0){
+                long sequence = s.pool.claim();
+                s.pool.get(sequence).construct(42, "producer", "message", null, LogManager.Level.INFO, null);
+                s.pool.publish(sequence);
+            } else {
+                LogEvent e = s.pool.poll();
+                if (e == null)
+                    s.polled = "empty";
+                else {
+                    // read each field once, the producer may still be writing them
+                    long time = e.time;
+                    String thread = e.threadName, msg = e.msg;
+                    LogManager.Level lvl = e.lvl;
+                    int set = (time == 42 ? 1 : 0) + (thread != null ? 1 : 0) + (msg != null ? 1 : 0)
+                            + (lvl != null ? 1 : 0);
+                    s.polled = set == 4 ? "complete" : set == 0 ? "blank" : "torn (" + set + "/4 fields)";
+                }
+            }
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.polled;
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("empty") || outcome.equals("complete") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+
+    /**
+     * Two producers claim concurrently: they must get different events.
+     */
+    private static final class ClaimClaim extends StressTest<State> {
+
+        ClaimClaim(){
+            super("LogEventPool claim+claim", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0)
+                s.a = s.pool.get(s.pool.claim());
+            else
+                s.b = s.pool.get(s.pool.claim());
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.a == s.b ? "same event" : "distinct events";
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("distinct events") ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+}
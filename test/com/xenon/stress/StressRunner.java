@@ -0,0 +1,102 @@
+package test.com.xenon.stress;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs the {@link StressTest}s of the lock-free structures and reports their outcomes.
+ * Usage: <code>StressRunner [millisPerTest] [nameFilter]</code>. Exits with 1 if any forbidden outcome showed up.
+ * <p>
+ * As in jcstress, actors don't meet at a barrier for each state, which would mostly serialize them: states are
+ * allocated by batches, every actor thread runs through the whole batch, and only batches are synchronized.
+ * Actors then run on the same state at about the same time, with slight, varying offsets.
+ * Rare outcomes need parallel hardware: on a single core, interleavings only happen at preemption points.
+ * @author Zenon
+ */
+public class StressRunner {
+
+    private static final int BATCH = 1 << 10;
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        String filter = args.length > 1 ? args[1] : "";
+
+        List<StressTest<?>> tests = new ArrayList<>();
+        tests.addAll(AsyncDonutStress.tests());
+        tests.addAll(AsyncTorusStress.tests());
+        tests.addAll(LogEventPoolStress.tests());
+        tests.addAll(WeakVolatileIntStress.tests());
+
+        int failed = 0;
+        for (StressTest<?> test : tests){
+            if (!test.name().contains(filter))
+                continue;
+            if (!run(test, millis))
+                failed++;
+        }
+        System.out.println(failed == 0 ? "no forbidden outcome" : failed + " test(s) with forbidden outcomes");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Runs the test for about the given time and prints its outcomes.
+     * @return false if a forbidden outcome showed up
+     */
+    private static <S> boolean run(StressTest<S> test, long millis) throws Exception {
+        final int n = test.actors();
+        @SuppressWarnings("unchecked")
+        final S[] batch = (S[]) new Object[BATCH];
+        final CyclicBarrier barrier = new CyclicBarrier(n + 1);
+        final boolean[] stop = {false};    // written before a barrier, read after it
+
+        Thread[] threads = new Thread[n];
+        for (int a = 0; a < n; a++){
+            final int actor = a;
+            threads[a] = new Thread(() -> {
+                try {
+                    while (true){
+                        barrier.await();    // batch ready
+                        if (stop[0])
+                            return;
+                        for (S state : batch)
+                            test.actor(actor, state);
+                        barrier.await();    // batch done
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, test.name() + " actor #" + a);
+            threads[a].start();
+        }
+
+        Map<String, Long> outcomes = new TreeMap<>();
+        long rounds = 0;
+        final long end = System.nanoTime() + millis * 1_000_000;
+        while (System.nanoTime() < end){
+            for (int i = 0; i < BATCH; i++)
+                batch[i] = test.newState();
+            barrier.await();
+            barrier.await();
+            for (S state : batch)
+                outcomes.merge(test.arbiter(state), 1L, Long::sum);
+            rounds += BATCH;
+        }
+        stop[0] = true;
+        barrier.await();
+        for (Thread t : threads)
+            t.join();
+
+        boolean ok = true;
+        System.out.printf("%s (%d rounds)%n", test.name(), rounds);
+        for (var e : outcomes.entrySet()){
+            StressTest.Expect expect = test.expect(e.getKey());
+            ok &= expect != StressTest.Expect.FORBIDDEN;
+            System.out.printf("  %-12s %12d  %s%n", expect, e.getValue(), e.getKey());
+        }
+        return ok;
+    }
+}
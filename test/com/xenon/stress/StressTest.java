@@ -0,0 +1,76 @@
+package test.com.xenon.stress;
+
+/**
+ * A concurrency stress test, in the spirit of jcstress: a few actors run concurrently on a fresh state, then an
+ * arbiter turns the state into an outcome, which is classified as expected, interesting or forbidden.
+ * Run by {@link StressRunner}, which repeats this millions of times to catch rare interleavings.
+ * <p>
+ * Actors store their results in the state, so each test defines its own state class.
+ * @param <S> the type of state
+ * @author Zenon
+ */
+public abstract class StressTest<S> {
+
+    /**
+     * How an outcome is classified.
+     */
+    public enum Expect{
+        /**
+         * A legal outcome.
+         */
+        ACCEPTABLE,
+        /**
+         * A legal but noteworthy outcome, e.g. an overwrite the structure documents.
+         */
+        INTERESTING,
+        /**
+         * An outcome the structure's contract rules out: lost or duplicated elements, torn events...
+         */
+        FORBIDDEN
+    }
+
+    private final String name;
+    private final int actors;
+
+    /**
+     * @param name the name of the test, shown in reports
+     * @param actors the number of actors, each run by its own thread
+     */
+    protected StressTest(String name, int actors){
+        this.name = name;
+        this.actors = actors;
+    }
+
+    /**
+     * @return a fresh state, on which the actors will run once
+     */
+    protected abstract S newState();
+
+    /**
+     * Runs an actor on a state, concurrently with the other actors.
+     * @param actor the index of the actor
+     * @param state the state
+     */
+    protected abstract void actor(int actor, S state);
+
+    /**
+     * Called once every actor is done with the state.
+     * @param state the state
+     * @return the outcome
+     */
+    protected abstract String arbiter(S state);
+
+    /**
+     * @param outcome an outcome returned by {@link #arbiter(Object)}
+     * @return how it's classified
+     */
+    protected abstract Expect expect(String outcome);
+
+    public String name(){
+        return name;
+    }
+
+    public int actors(){
+        return actors;
+    }
+}
@@ -0,0 +1,174 @@
+package test.com.xenon.stress;
+
+import test.com.xenon.logger.WeakVolatileInt;
+
+import java.util.List;
+
+/**
+ * Stress tests of {@link WeakVolatileInt}, checking that its fences give the orderings its methods claim.
+ * @author Zenon
+ */
+public final class WeakVolatileIntStress {
+
+    private WeakVolatileIntStress(){}
+
+    public static List<StressTest<?>> tests(){
+        return List.of(new MessagePassing(), new Dekker(), new FetchAndAdd(), new Cas(false), new Cas(true));
+    }
+
+    private static final class State {
+        final WeakVolatileInt x = new WeakVolatileInt(), y = new WeakVolatileInt();
+        int data;
+        int r1, r2;
+        boolean b1, b2;
+    }
+
+    /**
+     * Writes data, then releases a flag; the reader acquires the flag, then reads data.
+     * Seeing the flag without the data is forbidden.
+     */
+    private static final class MessagePassing extends StressTest<State> {
+
+        MessagePassing(){
+            super("WeakVolatileInt set/get message passing", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0){
+                s.data = 1;
+                s.x.set(1);
+            } else {
+                s.r1 = s.x.get();
+                s.r2 = s.data;
+            }
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return "flag=" + s.r1 + ", data=" + s.r2;
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("flag=1, data=0") ? Expect.FORBIDDEN : Expect.ACCEPTABLE;
+        }
+    }
+
+    /**
+     * Each actor volatile-writes its variable then volatile-reads the other one.
+     * Both reading 0 means a store was reordered with the following load.
+     */
+    private static final class Dekker extends StressTest<State> {
+
+        Dekker(){
+            super("WeakVolatileInt setVolatile/getVolatile Dekker", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0){
+                s.x.setVolatile(1);
+                s.r1 = s.y.getVolatile();
+            } else {
+                s.y.setVolatile(1);
+                s.r2 = s.x.getVolatile();
+            }
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.r1 + ", " + s.r2;
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("0, 0") ? Expect.FORBIDDEN : Expect.ACCEPTABLE;
+        }
+    }
+
+    /**
+     * Two concurrent fetchAndAdd(1): they must return different values, and both increments must count.
+     */
+    private static final class FetchAndAdd extends StressTest<State> {
+
+        FetchAndAdd(){
+            super("WeakVolatileInt fetchAndAdd", 2);
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @Override
+        protected void actor(int actor, State s) {
+            if (actor == 0)
+                s.r1 = s.x.fetchAndAdd(1);
+            else
+                s.r2 = s.x.fetchAndAdd(1);
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.r1 + ", " + s.r2 + ", final " + s.x.getVolatile();
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            return outcome.equals("0, 1, final 2") || outcome.equals("1, 0, final 2")
+                    ? Expect.ACCEPTABLE : Expect.FORBIDDEN;
+        }
+    }
+
+    /**
+     * Two concurrent CAS from 0: exactly one may succeed with {@link WeakVolatileInt#realCas(int, int)}.
+     * The deprecated {@link WeakVolatileInt#cas(int, int)} is a plain read then write, which documents that both
+     * may succeed: that outcome is only interesting there.
+     */
+    private static final class Cas extends StressTest<State> {
+        private final boolean real;
+
+        Cas(boolean real){
+            super("WeakVolatileInt " + (real ? "realCas" : "cas (deprecated)"), 2);
+            this.real = real;
+        }
+
+        @Override
+        protected State newState() {
+            return new State();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        protected void actor(int actor, State s) {
+            boolean b = real ? s.x.realCas(0, actor + 1) : s.x.cas(0, actor + 1);
+            if (actor == 0)
+                s.b1 = b;
+            else
+                s.b2 = b;
+        }
+
+        @Override
+        protected String arbiter(State s) {
+            return s.b1 + ", " + s.b2;
+        }
+
+        @Override
+        protected Expect expect(String outcome) {
+            if (outcome.equals("true, false") || outcome.equals("false, true"))
+                return Expect.ACCEPTABLE;
+            return !real && outcome.equals("true, true") ? Expect.INTERESTING : Expect.FORBIDDEN;
+        }
+    }
+}